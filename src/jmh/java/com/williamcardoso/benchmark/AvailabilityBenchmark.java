@@ -0,0 +1,43 @@
+package com.williamcardoso.benchmark;
+
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import com.williamcardoso.libraryapi.service.index.AvailabilityIndex;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+// consulta de disponibilidade de uma estante inteira (GET /api/books/availability) no bitmap em memória
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AvailabilityBenchmark {
+
+    @Param({ "1000", "5000" })
+    int ids;
+
+    AvailabilityIndex index;
+    List<Long> shelf;
+
+    @Setup
+    public void setUp() {
+        LoanRepository repository = Mockito.mock(LoanRepository.class);
+        Mockito.when(repository.streamLoanedBookIds()).thenReturn(LongStream.range(0, 1_000_000).filter(i -> i % 3 == 0).boxed());
+        index = new AvailabilityIndex(repository, Mockito.mock(PlatformTransactionManager.class));
+        index.load();//um terço de 1 milhão de livros emprestados
+        shelf = LongStream.range(500_000, 500_000 + ids).boxed().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Set<Long> loanedAmong() {
+        return index.loanedAmong(shelf);
+    }
+}
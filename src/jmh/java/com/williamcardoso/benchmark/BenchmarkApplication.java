@@ -0,0 +1,59 @@
+package com.williamcardoso.benchmark;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.repository.BookRepository;
+import com.williamcardoso.libraryapi.service.BookService;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// contexto do spring sem a camada web, com o H2 em memória, para os benchmarks de service
+// (fora do pacote libraryapi para não ser encontrado pelo component scan da aplicação)
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EntityScan(basePackageClasses = Book.class)
+@EnableJpaRepositories(basePackageClasses = BookRepository.class)
+@ComponentScan(basePackageClasses = BookService.class)
+public class BenchmarkApplication {
+
+    static final String[] WORDS = { "aventuras", "memorias", "contos", "historia", "viagem", "segredo",
+            "cidade", "noite", "jardim", "guerra", "mar", "sombra", "tempo", "casa", "caminho", "estrela" };
+
+    static ConfigurableApplicationContext start(String database) {
+        return new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "logging.level.org.hibernate.engine.jdbc=OFF")//violações esperadas de constraint (emprestimo recusado) não poluem a saida
+                .run();
+    }
+
+    //livros com titulos de 3 palavras e 1000 autores diferentes ("autor0" .. "autor999")
+    static void seed(BookService service, int size) {
+        List<Book> chunk = new ArrayList<>();
+        for ( int i = 0; i < size; i++){
+            chunk.add(book("seed-" + i, i));
+            if ( chunk.size() == 1000 || i == size - 1){
+                service.saveAll(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+    }
+
+    static Book book(String isbn, long i) {
+        return Book.builder()
+                .title(WORDS[(int) (i % WORDS.length)] + " " + WORDS[(int) ((i * 7) % WORDS.length)] + " " + i)
+                .author("autor" + (i % 1000))
+                .isbn(isbn)
+                .build();
+    }
+}
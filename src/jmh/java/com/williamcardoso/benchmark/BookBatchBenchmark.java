@@ -0,0 +1,62 @@
+package com.williamcardoso.benchmark;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.service.BookBatchResult;
+import com.williamcardoso.libraryapi.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// livros cadastrados por segundo: um insert por chamada (POST /api/books) contra o cadastro em lote
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BookBatchBenchmark {
+
+    static final int RECORDS = 500;
+
+    ConfigurableApplicationContext context;
+    BookService service;
+    AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("batch");
+        service = context.getBean(BookService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void singleRowSave() {
+        for ( int i = 0; i < RECORDS; i++){
+            service.save(newBook());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public List<BookBatchResult> batchSaveAll() {
+        List<Book> books = new ArrayList<>(RECORDS);
+        for ( int i = 0; i < RECORDS; i++){
+            books.add(newBook());
+        }
+        return service.saveAll(books);
+    }
+
+    private Book newBook() {
+        long i = sequence.incrementAndGet();
+        return BenchmarkApplication.book("bench-" + i, i);
+    }
+}
@@ -0,0 +1,88 @@
+package com.williamcardoso.benchmark;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.projection.BookView;
+import com.williamcardoso.libraryapi.service.BookCountMode;
+import com.williamcardoso.libraryapi.service.BookCursor;
+import com.williamcardoso.libraryapi.service.BookService;
+import com.williamcardoso.libraryapi.service.BookSuggestion;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// busca de livros com Example (offset + count), por projeção, por cursor, pelo indice de texto e pelas sugestões por prefixo, com o H2 em tamanhos diferentes
+// o tamanho de 1M pode ser medido com -Djmh.args="BookFindBenchmark -p size=1000000"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BookFindBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    int size;
+
+    ConfigurableApplicationContext context;
+    BookService service;
+    BookCursor middle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("find-" + size);
+        service = context.getBean(BookService.class);
+        BenchmarkApplication.seed(service, size);
+        middle = BookCursor.first(Sort.by("id")).next(Book.builder().id((long) size / 2).build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Book> exampleFirstPage() {//autor contendo "autor42": autor42 e autor420..autor429
+        return service.find(Book.builder().author("autor42").build(), PageRequest.of(0, 20));
+    }
+
+    @Benchmark
+    public Page<Book> exampleMiddlePage() {
+        return service.find(new Book(), PageRequest.of(size / 40, 20));
+    }
+
+    @Benchmark
+    public Page<BookView> projectionFirstPage() {//mesma busca do exampleFirstPage projetada no BookView
+        return service.findViews(Book.builder().author("autor42").build(), PageRequest.of(0, 20), BookCountMode.EXACT);
+    }
+
+    @Benchmark
+    public Page<BookView> projectionMiddlePage() {
+        return service.findViews(new Book(), PageRequest.of(size / 40, 20), BookCountMode.EXACT);
+    }
+
+    @Benchmark
+    public Slice<Book> keysetMiddlePage() {
+        return service.findAfter(new Book(), middle, 20);
+    }
+
+    @Benchmark
+    public Page<Book> indexSearch() {//mesmos autores do exampleFirstPage, pelo prefixo no indice em memória
+        return service.search("autor42", PageRequest.of(0, 20));
+    }
+
+    @Benchmark
+    public List<BookSuggestion> suggestPrefix() {//autocomplete com os mesmos autores do exampleFirstPage
+        return service.suggest("autor42", 10);
+    }
+
+    @Benchmark
+    public List<BookSuggestion> suggestWidePrefix() {//pior caso: o prefixo casa com todos os livros
+        return service.suggest("au", 10);
+    }
+}
@@ -0,0 +1,70 @@
+package com.williamcardoso.benchmark;
+
+import com.williamcardoso.libraryapi.exception.BusinessEsception;
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Customer;
+import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import com.williamcardoso.libraryapi.service.BookService;
+import com.williamcardoso.libraryapi.service.CustomerService;
+import com.williamcardoso.libraryapi.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// LoanServiceImpl.save no H2: emprestimo aceito (insert + devolução) e emprestimo recusado pelo indice unico do emprestimo ativo
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LoanSaveBenchmark {
+
+    ConfigurableApplicationContext context;
+    LoanService service;
+    LoanRepository repository;
+    Book available;
+    Book loaned;
+    Customer customer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("loan");
+        service = context.getBean(LoanService.class);
+        repository = context.getBean(LoanRepository.class);
+        BookService books = context.getBean(BookService.class);
+        customer = context.getBean(CustomerService.class).getOrCreate("Fulano");
+        available = books.save(BenchmarkApplication.book("available", 1));
+        loaned = books.save(BenchmarkApplication.book("loaned", 2));
+        service.save(loan(loaned));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Loan checkoutAndReturn() {
+        Loan loan = service.save(loan(available));
+        loan.setReturned(true);
+        return repository.save(loan);
+    }
+
+    @Benchmark
+    public boolean rejectedCheckout() {
+        try {
+            service.save(loan(loaned));
+            return false;
+        } catch (BusinessEsception e){
+            return true;
+        }
+    }
+
+    private Loan loan(Book book) {
+        return Loan.builder().book(book).customer(customer).loandate(LocalDate.now()).build();
+    }
+}
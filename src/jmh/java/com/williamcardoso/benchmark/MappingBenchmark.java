@@ -0,0 +1,58 @@
+package com.williamcardoso.benchmark;
+
+import com.williamcardoso.libraryapi.api.dto.BookDto;
+import com.williamcardoso.libraryapi.api.dto.LoanDto;
+import com.williamcardoso.libraryapi.api.mapper.BookMapper;
+import com.williamcardoso.libraryapi.api.mapper.LoanMapper;
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Customer;
+import com.williamcardoso.libraryapi.model.entity.Loan;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// custo por chamada do mapeamento gerado pelo MapStruct comparado com o ModelMapper usado antes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MappingBenchmark {
+
+    BookMapper bookMapper = Mappers.getMapper(BookMapper.class);
+    LoanMapper loanMapper = Mappers.getMapper(LoanMapper.class);
+    ModelMapper modelMapper = new ModelMapper();
+
+    Book book = Book.builder().id(1l).title("As aventuras").author("Fulano").isbn("123").build();
+    BookDto dto = BookDto.builder().title("As aventuras").author("Fulano").isbn("123").build();
+    Customer customer = Customer.builder().id(1l).name("Fulano").build();
+    LoanDto loanDto = LoanDto.builder().isbn("123").customer("Fulano").build();
+
+    @Benchmark
+    public BookDto mapStructToDto() {
+        return bookMapper.toDto(book);
+    }
+
+    @Benchmark
+    public BookDto modelMapperToDto() {
+        return modelMapper.map(book, BookDto.class);
+    }
+
+    @Benchmark
+    public Book mapStructToEntity() {
+        return bookMapper.toEntity(dto);
+    }
+
+    @Benchmark
+    public Book modelMapperToEntity() {
+        return modelMapper.map(dto, Book.class);
+    }
+
+    @Benchmark
+    public Loan mapStructLoan() {
+        return loanMapper.toEntity(loanDto, book, customer);
+    }
+}
@@ -0,0 +1,44 @@
+package com.williamcardoso.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.williamcardoso.libraryapi.api.dto.BookDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// serialização da resposta do GET /api/books (Page<BookDto>) com o ObjectMapper configurado como no spring
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark {
+
+    @Param({ "20", "100" })
+    int pageSize;
+
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    Page<BookDto> page;
+
+    @Setup
+    public void setUp() {
+        List<BookDto> content = new ArrayList<>();
+        for ( long i = 0; i < pageSize; i++){
+            content.add(BookDto.builder().id(i).title("As aventuras " + i).author("Fulano").isbn("isbn-" + i).build());
+        }
+        page = new PageImpl<>(content, PageRequest.of(0, pageSize), 10000);
+    }
+
+    @Benchmark
+    public byte[] pageOfBooks() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
@@ -1,16 +1,25 @@
 package com.williamcardoso.libraryapi;
 
-import org.modelmapper.ModelMapper;
+import com.williamcardoso.libraryapi.api.mapper.BookMapper;
+import com.williamcardoso.libraryapi.api.mapper.LoanMapper;
+import org.mapstruct.factory.Mappers;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling //reconstrução periodica do filtro de isbns
 public class LibraryApiApplication {
 
 	@Bean //para ser gerenciado pelo Spring
-	public ModelMapper modelMapper(){
-		return new ModelMapper();
+	public BookMapper bookMapper(){
+		return Mappers.getMapper(BookMapper.class);//implementação gerada pelo MapStruct
+	}
+
+	@Bean
+	public LoanMapper loanMapper(){
+		return Mappers.getMapper(LoanMapper.class);
 	}
 
 	public static void main(String[] args) {
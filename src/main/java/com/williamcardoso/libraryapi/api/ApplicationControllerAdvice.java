@@ -2,6 +2,8 @@ package com.williamcardoso.libraryapi.api;
 
 import com.williamcardoso.libraryapi.api.exception.ApiError;
 import com.williamcardoso.libraryapi.exception.BusinessEsception;
+import com.williamcardoso.libraryapi.exception.ServiceBusyException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -31,6 +33,10 @@ public class ApplicationControllerAdvice {
         return new ApiError(ex);
     }
 
+    @ExceptionHandler(ServiceBusyException.class)//sobrecarga momentanea, o cliente pode tentar de novo
+    public ResponseEntity<ApiError> handleServiceBusyException(ServiceBusyException ex){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(new ApiError(ex));
+    }
 
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity handleResponseStatusException(ResponseStatusException ex){
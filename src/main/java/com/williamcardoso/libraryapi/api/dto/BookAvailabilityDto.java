@@ -0,0 +1,18 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookAvailabilityDto {
+
+    private List<Long> available;
+    private List<Long> loaned;
+}
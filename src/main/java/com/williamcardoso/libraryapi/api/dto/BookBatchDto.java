@@ -0,0 +1,26 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BookBatchDto {
+    // resumo do cadastro em lote, com o resultado de cada registro enviado
+
+    private int received;
+    private int created;
+    private int rejected;
+    private List<BookBatchItemDto> items = new ArrayList<>();
+
+    public void add(BookBatchItemDto item) {
+        this.items.add(item);
+        this.received++;
+        if ( item.getId() != null){
+            this.created++;
+        } else {
+            this.rejected++;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import com.williamcardoso.libraryapi.service.BookBatchResult;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookBatchItemDto {
+
+    private int index;//posição do registro no corpo da requisição
+    private String isbn;
+    private Long id;
+    private BookBatchResult.Status status;
+    private List<String> errors;
+}
@@ -0,0 +1,24 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BookLookupDto {
+    // resultado da busca de varios livros, um item por chave pedida e na mesma ordem
+
+    private int found;
+    private int missing;
+    private List<BookLookupItemDto> items = new ArrayList<>();
+
+    public void add(BookLookupItemDto item) {
+        this.items.add(item);
+        if ( item.isFound()){
+            this.found++;
+        } else {
+            this.missing++;
+        }
+    }
+}
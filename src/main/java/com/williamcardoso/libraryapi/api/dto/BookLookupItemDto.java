@@ -0,0 +1,18 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookLookupItemDto {
+
+    private Long id;//chave pedida, id ou isbn
+    private String isbn;
+    private boolean found;
+    private BookDto book;
+}
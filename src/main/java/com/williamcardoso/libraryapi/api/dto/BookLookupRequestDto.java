@@ -0,0 +1,19 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookLookupRequestDto {
+    // busca de varios livros: informar ids ou isbns
+
+    private List<Long> ids;
+    private List<String> isbns;
+}
@@ -0,0 +1,21 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSliceDto {
+    // pagina da busca por cursor, sem total de elementos
+
+    private List<BookDto> content;
+    private int size;
+    private boolean hasNext;
+    private String next;//token para buscar a proxima pagina (parametro after)
+}
@@ -0,0 +1,19 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSuggestionDto {
+
+    private Long id;
+    private String title;
+    private String author;
+    private String isbn;
+    private long loans;//emprestimos do livro, criterio da ordenação
+}
@@ -0,0 +1,26 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class LoanBatchDto {
+    // resumo do emprestimo em lote, com o resultado de cada isbn enviado
+
+    private int received;
+    private int created;
+    private int rejected;
+    private List<LoanBatchItemDto> items = new ArrayList<>();
+
+    public void add(LoanBatchItemDto item) {
+        this.items.add(item);
+        this.received++;
+        if ( item.getId() != null){
+            this.created++;
+        } else {
+            this.rejected++;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import com.williamcardoso.libraryapi.service.LoanBatchResult;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanBatchItemDto {
+
+    private int index;//posição do isbn na requisição
+    private String isbn;
+    private Long id;
+    private LoanBatchResult.Status status;
+    private List<String> errors;
+}
@@ -0,0 +1,20 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import com.williamcardoso.libraryapi.service.LoanBatchMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoanBatchRequestDto {
+
+    private String customer;
+    private List<String> isbns;
+    private LoanBatchMode mode;//padrão ALL_OR_NOTHING
+}
@@ -0,0 +1,22 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanSliceDto {
+    // pagina do historico do cliente por cursor, sem total de elementos
+
+    private List<LoanHistory> content;
+    private int size;
+    private boolean hasNext;
+    private String next;//token para buscar a proxima pagina (parametro after)
+}
@@ -0,0 +1,18 @@
+package com.williamcardoso.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReturnedLoanDto {
+
+    @NotNull//a coluna returned é not null, sem isso o banco devolveria 500
+    private Boolean returned;
+}
@@ -1,6 +1,7 @@
 package com.williamcardoso.libraryapi.api.exception;
 
 import com.williamcardoso.libraryapi.exception.BusinessEsception;
+import com.williamcardoso.libraryapi.exception.ServiceBusyException;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -24,6 +25,10 @@ public class ApiError {
         this.errors = Arrays.asList(ex.getMessage());//criando um array com apenas um elemento.
     }
 
+    public ApiError(ServiceBusyException ex) {
+        this.errors = Arrays.asList(ex.getMessage());
+    }
+
     public List<String> getErrors() {
         return errors;
     }
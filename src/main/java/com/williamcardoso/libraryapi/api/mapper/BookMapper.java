@@ -0,0 +1,25 @@
+package com.williamcardoso.libraryapi.api.mapper;
+
+import com.williamcardoso.libraryapi.api.dto.BookDto;
+import com.williamcardoso.libraryapi.api.dto.BookSuggestionDto;
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.projection.BookView;
+import com.williamcardoso.libraryapi.service.BookSuggestion;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+
+// implementação gerada em tempo de compilação pelo MapStruct, sem reflexão a cada chamada
+@Mapper(unmappedTargetPolicy = ReportingPolicy.ERROR)//campo sem mapeamento quebra a compilação
+public interface BookMapper {
+
+    BookDto toDto(Book book);
+
+    BookDto toDto(BookView view);
+
+    BookSuggestionDto toDto(BookSuggestion suggestion);
+
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    Book toEntity(BookDto dto);
+}
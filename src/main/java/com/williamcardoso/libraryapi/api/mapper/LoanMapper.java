@@ -0,0 +1,20 @@
+package com.williamcardoso.libraryapi.api.mapper;
+
+import com.williamcardoso.libraryapi.api.dto.LoanDto;
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Customer;
+import com.williamcardoso.libraryapi.model.entity.Loan;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+
+@Mapper(unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface LoanMapper {
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "returned", ignore = true)
+    @Mapping(target = "book", source = "book")//livro ja buscado pelo isbn
+    @Mapping(target = "customer", source = "customer")//cliente ja resolvido pelo nome
+    @Mapping(target = "loandate", expression = "java(java.time.LocalDate.now())")
+    Loan toEntity(LoanDto dto, Book book, Customer customer);
+}
@@ -0,0 +1,43 @@
+package com.williamcardoso.libraryapi.api.resource;
+
+import com.williamcardoso.libraryapi.api.dto.BookAvailabilityDto;
+import com.williamcardoso.libraryapi.service.LoanService;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/books/availability")
+@RequiredArgsConstructor
+public class BookAvailabilityController {
+
+    static final int MAX_IDS = 10000;
+
+    private final LoanService loanService;
+
+    @GetMapping
+    @ApiOperation("Checks which of the passed books are available for loan")
+    public BookAvailabilityDto availability(@RequestParam List<Long> ids){
+        if ( ids.size() > MAX_IDS){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_IDS + " ids per request");
+        }
+        Set<Long> loaned = loanService.loanedAmong(ids);
+
+        List<Long> availableIds = new ArrayList<>();
+        List<Long> loanedIds = new ArrayList<>();
+        for ( Long id : new LinkedHashSet<>(ids)){//mesma ordem dos ids recebidos, sem repetidos
+            (loaned.contains(id) ? loanedIds : availableIds).add(id);
+        }
+        return BookAvailabilityDto.builder().available(availableIds).loaned(loanedIds).build();
+    }
+}
@@ -1,23 +1,54 @@
 package com.williamcardoso.libraryapi.api.resource;
 
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.williamcardoso.libraryapi.api.dto.BookBatchDto;
+import com.williamcardoso.libraryapi.api.dto.BookBatchItemDto;
 import com.williamcardoso.libraryapi.api.dto.BookDto;
+import com.williamcardoso.libraryapi.api.dto.BookLookupDto;
+import com.williamcardoso.libraryapi.api.dto.BookLookupItemDto;
+import com.williamcardoso.libraryapi.api.dto.BookLookupRequestDto;
+import com.williamcardoso.libraryapi.api.dto.BookSliceDto;
+import com.williamcardoso.libraryapi.api.dto.BookSuggestionDto;
+import com.williamcardoso.libraryapi.api.mapper.BookMapper;
 import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.projection.BookVersion;
+import com.williamcardoso.libraryapi.model.projection.BookView;
+import com.williamcardoso.libraryapi.service.BookBatchResult;
+import com.williamcardoso.libraryapi.service.BookCountMode;
+import com.williamcardoso.libraryapi.service.BookCursor;
+import com.williamcardoso.libraryapi.service.BookPage;
 import com.williamcardoso.libraryapi.service.BookService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
-import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
-import java.util.List;
+import javax.validation.Validator;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @RestController
@@ -28,12 +59,25 @@ public class BookController {
 
     //private final BookService service; se for usar a anotação @RequiredArgsConstructor
 
+    static final String NDJSON = "application/x-ndjson";
+    static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(NDJSON);
+    static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    static final int MAX_LOOKUP_SIZE = 1000;
+    static final int MAX_SUGGESTIONS = 50;
+
     private BookService service;
-    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    private Validator validator;
+    private ObjectMapper objectMapper;
+
+    @Value("${library.books.batch.chunk-size:500}")
+    private int batchChunkSize;
 
-    public BookController(BookService service, ModelMapper modelMapper) {
+    public BookController(BookService service, BookMapper bookMapper, Validator validator, ObjectMapper objectMapper) {
         this.service = service;
-        this.modelMapper = modelMapper;
+        this.bookMapper = bookMapper;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -47,7 +91,7 @@ public class BookController {
 //                .title(dto.getTitle())
 //                .isbn(dto.getIsbn())
 //                .build();
-        Book entity = modelMapper.map(dto, Book.class);
+        Book entity = bookMapper.toEntity(dto);
 
         entity = service.save(entity);//salvando entidade no BD.
 
@@ -57,59 +101,336 @@ public class BookController {
 //                        .title(entity.getTitle())
 //                        .isbn(entity.getIsbn())
 //                        .build();
-        return modelMapper.map(entity, BookDto.class);
+        return bookMapper.toDto(entity);
 
     }
 
 
     @GetMapping("{id}")
     @ApiOperation("Obtains a book details by id")
-    public BookDto get(@PathVariable Long id){
+    public ResponseEntity<BookDto> get(@PathVariable Long id, @RequestHeader HttpHeaders headers){
 
 //        Book book = service.getById(id).get();//get no final pois e retornado um option
 //
 //        return modelMapper.map(book, BookDto.class);
 
-        return service
-                .getById(id)
-                .map( book -> modelMapper.map(book, BookDto.class))
+        if ( !headers.getIfNoneMatch().isEmpty() || headers.getIfModifiedSince() != -1){
+            Optional<BookVersion> version = service.getVersion(id);
+            if ( version.isPresent() && notModified(headers, version.get())){
+                return withVersion(ResponseEntity.status(HttpStatus.NOT_MODIFIED), version.get().getVersion(), version.get().getUpdatedAt())
+                        .build();//304 sem carregar, mapear ou serializar o livro
+            }
+        }
+        Book book = service.getById(id)
                 .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND)); //exception ja disponibilizada pelo spring com codigo de status.
+        //ETag e Last-Modified do livro carregado: um update entre as duas leituras não junta a versão antiga com o corpo novo
+        return withVersion(ResponseEntity.ok(), book.getVersion(), book.getUpdatedAt()).body(bookMapper.toDto(book));
+    }
+
+    //If-None-Match tem precedencia sobre If-Modified-Since, que tem precisão de segundos
+    private boolean notModified(HttpHeaders headers, BookVersion version) {
+        String etag = etag(version.getVersion());
+        if ( !headers.getIfNoneMatch().isEmpty()){
+            return headers.getIfNoneMatch().stream()
+                    .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)//comparação fraca, como no checkNotModified
+                    .anyMatch(tag -> tag.equals(etag) || tag.equals("*"));
+        }
+        return version.getUpdatedAt() != null && headers.getIfModifiedSince() >= version.getUpdatedAt().toEpochMilli() / 1000 * 1000;
+    }
+
+    private <B extends ResponseEntity.HeadersBuilder<B>> B withVersion(B response, Long version, Instant updatedAt) {
+        if ( version != null){
+            response.eTag(etag(version));
+        }
+        if ( updatedAt != null){
+            response.lastModified(updatedAt.toEpochMilli());
+        }
+        return response;
     }
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    @ApiOperation("Deletes a book by id")
+    @ApiOperation("Deletes a book by id; If-Match with the ETag rejects the delete (412) if the book changed meanwhile")
     @ApiResponses({ @ApiResponse( code = 204, message = "Book succesfuly deleted")})//alterando codigos no swagger
-    public void delete( @PathVariable Long id){
-         Book book = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-         service.delete(book);
-
+    public void delete( @PathVariable Long id,
+                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        boolean deleted;
+        try {
+            deleted = service.delete(id, expectedVersion(ifMatch));//delete condicional, sem carregar o livro antes
+        } catch (ObjectOptimisticLockingFailureException ex){
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Book was changed by another request");
+        }
+        if ( !deleted){
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
     }
 
     @PutMapping("{id}")
-    @ApiOperation("updates a book")
-    public BookDto update( @PathVariable Long id, BookDto dto){
-        return service.getById(id).map( book  -> {//colocado entre chaves para atualizar um objeto
-
+    @ApiOperation("updates a book; If-Match with the ETag rejects the update (412) if the book changed meanwhile")
+    public ResponseEntity<BookDto> update( @PathVariable Long id, BookDto dto,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Book book = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Long expected = expectedVersion(ifMatch);
+        if ( expected != null){
+            book.setVersion(expected);//o update confere essa versão no banco
+        }
         book.setAuthor(dto.getAuthor());
         book.setTitle(dto.getTitle());
-        book = service.update(book);
-        return modelMapper.map(book, BookDto.class);})
-                .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        try {
+            book = service.update(book);
+        } catch (ObjectOptimisticLockingFailureException ex){
+            throw new ResponseStatusException(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT,
+                    "Book was changed by another request");
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if ( book.getVersion() != null){
+            response.eTag(etag(book.getVersion()));
+        }
+        return response.body(bookMapper.toDto(book));
+    }
+
+    @PatchMapping("{id}")
+    @ApiOperation("Changes title and/or author with a single conditional update; If-Match with the ETag rejects it (412) if the book changed meanwhile")
+    @ApiResponses({ @ApiResponse( code = 204, message = "Book succesfuly changed")})
+    public ResponseEntity<Void> patch( @PathVariable Long id, @RequestBody BookDto dto,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        if ( dto.getTitle() == null && dto.getAuthor() == null){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Inform title or author");
+        }
+        if ( "".equals(dto.getTitle()) || "".equals(dto.getAuthor())){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Title and author cant be empty");
+        }
+        Long expected = expectedVersion(ifMatch);
+        Book changes = Book.builder().id(id).title(dto.getTitle()).author(dto.getAuthor()).version(expected).build();//isbn não muda, igual ao put
+        boolean patched;
+        try {
+            patched = service.patch(changes);
+        } catch (ObjectOptimisticLockingFailureException ex){
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Book was changed by another request");
+        }
+        if ( !patched){
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        ResponseEntity.HeadersBuilder<?> response = ResponseEntity.noContent();
+        if ( expected != null){
+            response.eTag(etag(expected + 1));//o update soma um na versão conferida
+        }
+        return response.build();
+    }
+
+    private String etag(Long version) {//forte: o mesmo livro na mesma versão é identico byte a byte
+        return "\"" + version + "\"";
+    }
 
+    private Long expectedVersion(String ifMatch) {//null quando não há o que conferir (sem If-Match ou "*")
+        return ifMatch == null || "*".equals(ifMatch.trim()) ? null : version(ifMatch);
+    }
 
+    private Long version(String ifMatch) {//If-Match só aceita ETag forte
+        String value = ifMatch.trim();
+        if ( value.length() > 2 && value.startsWith("\"") && value.endsWith("\"")){
+            try {
+                return Long.valueOf(value.substring(1, value.length() - 1));
+            } catch (NumberFormatException ex){
+                //cai no 412 abaixo
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match the book");
     }
+
     @GetMapping
-    @ApiOperation("Find books by params")
-    public Page<BookDto> find (BookDto dto, Pageable pageRequest){
+    @ApiOperation("Find books by params; count=CACHED reuses recent totals, count=NONE skips the total")
+    public Page<BookDto> find (BookDto dto, Pageable pageRequest,
+                               @RequestParam(defaultValue = "EXACT") BookCountMode count, WebRequest request){
 
-        Book filter = modelMapper.map(dto, Book.class);
-        Page<Book> result = service.find(filter, pageRequest);
+        Book filter = bookMapper.toEntity(dto);
+        BookPage<BookView> result = service.findViews(filter, pageRequest, count);//projeção, sem entidades gerenciadas
+        if ( request.checkNotModified(pageETag(result))){
+            return null;//304 sem mapear nem serializar a pagina
+        }
         List<BookDto> list = result.getContent().stream()  //metodo getContent que trás os registros lista.
-                .map(entity -> modelMapper.map(entity, BookDto.class))//retornando um stream de dto
+                .map(view -> bookMapper.toDto(view))//retornando um stream de dto
                 .collect(Collectors.toList());
-        return new PageImpl<BookDto>(list, pageRequest,result.getTotalElements());//(conteudo,pagina atual,total de elementos)
+        return new BookPage<BookDto>(list, pageRequest,result.getTotalElements(), result.getCountMode());//(conteudo,pagina atual,total de elementos,como o total foi obtido)
+
+
+    }
+
+    //fraco: ids e versões dos livros, total e modo do total; a mesma pagina pode ter outra serialização
+    private String pageETag(BookPage<BookView> page) {
+        ByteBuffer buffer = ByteBuffer.allocate(16 * page.getNumberOfElements());
+        for ( BookView view : page.getContent()){
+            buffer.putLong(view.getId()).putLong(view.getVersion() == null ? -1 : view.getVersion());
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(buffer.array()) + "-" + page.getTotalElements() + "-" + page.getCountMode() + "\"";
+    }
 
+    @GetMapping("search")
+    @ApiOperation("Full text search on title and author, ordered by relevance")
+    public Page<BookDto> search(@RequestParam("q") String query, Pageable pageRequest){
+
+        Page<Book> result = service.search(query, pageRequest);
+        List<BookDto> list = result.getContent().stream()
+                .map(entity -> bookMapper.toDto(entity))
+                .collect(Collectors.toList());
+        return new PageImpl<BookDto>(list, pageRequest, result.getTotalElements());
+    }
+
+    @GetMapping("suggest")
+    @ApiOperation("Autocomplete by title and author word prefixes, most loaned books first")
+    public List<BookSuggestionDto> suggest(@RequestParam String prefix, @RequestParam(defaultValue = "10") int size){
+
+        if ( size < 1 || size > MAX_SUGGESTIONS){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        return service.suggest(prefix, size).stream()
+                .map(suggestion -> bookMapper.toDto(suggestion))
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("seek")
+    @ApiOperation("Find books by params using a cursor (after) instead of page numbers")
+    public BookSliceDto seek(BookDto dto, Pageable pageRequest, @RequestParam(required = false) String after){
+
+        //primeira pagina usa a ordenação informada, as proximas a ordenação guardada no cursor
+        BookCursor cursor = after == null ? BookCursor.first(pageRequest.getSort()) : BookCursor.decode(after);
+        Book filter = bookMapper.toEntity(dto);
+        Slice<Book> result = service.findAfter(filter, cursor, pageRequest.getPageSize());
+
+        List<BookDto> list = result.getContent().stream()
+                .map(entity -> bookMapper.toDto(entity))
+                .collect(Collectors.toList());
+        String next = result.hasNext() ? cursor.next(result.getContent().get(result.getNumberOfElements() - 1)).encode() : null;
+        return BookSliceDto.builder().content(list).size(result.getSize()).hasNext(result.hasNext()).next(next).build();
+    }
+
+    @PostMapping("lookup")
+    @ApiOperation("Find several books by ids or isbns, in request order and with explicit misses")
+    public BookLookupDto lookup(@RequestBody BookLookupRequestDto dto){
+
+        boolean byIds = dto.getIds() != null && !dto.getIds().isEmpty();
+        boolean byIsbns = dto.getIsbns() != null && !dto.getIsbns().isEmpty();
+        if ( byIds == byIsbns){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Inform either ids or isbns");
+        }
+        int size = byIds ? dto.getIds().size() : dto.getIsbns().size();
+        if ( size > MAX_LOOKUP_SIZE){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_LOOKUP_SIZE + " books per lookup");
+        }
+        if ( (byIds ? dto.getIds() : dto.getIsbns()).contains(null)){//o cache e o filtro de isbn não aceitam chave nula
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ids and isbns cant be null");
+        }
+
+        BookLookupDto result = new BookLookupDto();
+        if ( byIds){
+            Map<Long, Book> books = service.getByIds(dto.getIds());
+            dto.getIds().forEach(id -> result.add(lookupItem(books.get(id)).id(id).build()));
+        } else {
+            Map<String, Book> books = service.getBooksByIsbns(dto.getIsbns());
+            dto.getIsbns().forEach(isbn -> result.add(lookupItem(books.get(isbn)).isbn(isbn).build()));
+        }
+        return result;
+    }
+
+    private BookLookupItemDto.BookLookupItemDtoBuilder lookupItem(Book book) {
+        return BookLookupItemDto.builder().found(book != null).book(book == null ? null : bookMapper.toDto(book));
+    }
+
+    @PostMapping(value = "batch", consumes = { MediaType.APPLICATION_JSON_VALUE, NDJSON })
+    @ApiOperation("Create books in batch from a JSON array or NDJSON")
+    public BookBatchDto createBatch(InputStream body) throws IOException {
+
+        BookBatchDto summary = new BookBatchDto();
+        //lendo os registros um a um do corpo da requisição (array json ou um json por linha), sem carregar tudo em memória
+        try (MappingIterator<BookDto> records = objectMapper.readerFor(BookDto.class).readValues(body)) {
+            List<BookDto> chunk = new ArrayList<>();
+            while ( records.hasNextValue()){
+                chunk.add(records.nextValue());
+                if ( chunk.size() == batchChunkSize){
+                    saveChunk(chunk, summary);
+                    chunk.clear();
+                }
+            }
+            saveChunk(chunk, summary);
+        } catch (JsonProcessingException ex){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid batch content: " + ex.getOriginalMessage());
+        }
+        return summary;
+    }
+
+    private void saveChunk(List<BookDto> chunk, BookBatchDto summary) {
+
+        List<Set<ConstraintViolation<BookDto>>> violations = chunk.parallelStream()//validação em paralelo
+                .map(dto -> validator.validate(dto))
+                .collect(Collectors.toList());
+
+        List<Book> valid = new ArrayList<>();
+        for ( int i = 0; i < chunk.size(); i++){
+            if ( violations.get(i).isEmpty()){
+                valid.add(bookMapper.toEntity(chunk.get(i)));
+            }
+        }
+        Iterator<BookBatchResult> results = service.saveAll(valid).iterator();//resultados na mesma ordem dos validos
+
+        int offset = summary.getReceived();
+        for ( int i = 0; i < chunk.size(); i++){
+            BookBatchItemDto item = BookBatchItemDto.builder().index(offset + i).isbn(chunk.get(i).getIsbn()).build();
+            if ( violations.get(i).isEmpty()){
+                BookBatchResult result = results.next();
+                item.setId(result.getId());
+                item.setStatus(result.getStatus());
+                item.setErrors(result.getMessage() == null ? null : Arrays.asList(result.getMessage()));
+            } else {
+                item.setStatus(BookBatchResult.Status.INVALID);
+                item.setErrors(violations.get(i).stream()
+                        .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                        .collect(Collectors.toList()));
+            }
+            summary.add(item);
+        }
+    }
+
+    @GetMapping("export")
+    @ApiOperation("Exports every book matching the params as NDJSON or CSV")
+    public ResponseEntity<StreamingResponseBody> export(BookDto dto, @RequestParam(defaultValue = "ndjson") String format){
+
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if ( !csv && !"ndjson".equalsIgnoreCase(format)){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+        }
+        Book filter = bookMapper.toEntity(dto);
+
+        StreamingResponseBody body = out -> {//escrito direto na resposta, um livro por vez
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if ( csv){
+                writer.write("id,title,author,isbn\n");
+            }
+            service.export(filter, book -> {
+                try {
+                    if ( csv){
+                        writer.write(book.getId() + "," + csvValue(book.getTitle()) + "," + csvValue(book.getAuthor()) + "," + csvValue(book.getIsbn()) + "\n");
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(bookMapper.toDto(book)));
+                        writer.write("\n");
+                    }
+                } catch (IOException ex){
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(csv ? TEXT_CSV : APPLICATION_NDJSON)
+                .body(body);
+    }
 
+    private String csvValue(String value) {
+        if ( value == null){
+            return "";
+        }
+        if ( value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")){
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
     }
 
 }
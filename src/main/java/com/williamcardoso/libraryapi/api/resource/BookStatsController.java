@@ -0,0 +1,56 @@
+package com.williamcardoso.libraryapi.api.resource;
+
+import com.williamcardoso.libraryapi.service.cache.BookCache;
+import com.williamcardoso.libraryapi.service.cache.BookCacheStats;
+import com.williamcardoso.libraryapi.service.cache.BookSearchCache;
+import com.williamcardoso.libraryapi.service.cache.BookSearchCacheStats;
+import com.williamcardoso.libraryapi.service.index.AvailabilityIndex;
+import com.williamcardoso.libraryapi.service.index.AvailabilityStats;
+import com.williamcardoso.libraryapi.service.index.IsbnFilter;
+import com.williamcardoso.libraryapi.service.index.IsbnFilterStats;
+import com.williamcardoso.libraryapi.service.lock.BookContentionStats;
+import com.williamcardoso.libraryapi.service.lock.BookLocks;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/books")
+@RequiredArgsConstructor
+public class BookStatsController {
+
+    private final BookCache cache;
+    private final BookSearchCache searchCache;
+    private final IsbnFilter isbnFilter;
+    private final AvailabilityIndex availabilityIndex;
+    private final BookLocks bookLocks;
+
+    @GetMapping("cache")
+    public BookCacheStats cacheStats(){
+        return cache.stats();
+    }
+
+    @GetMapping("search-cache")
+    public BookSearchCacheStats searchCacheStats(){
+        return searchCache.stats();
+    }
+
+    @GetMapping("isbn-filter")
+    public IsbnFilterStats isbnFilterStats(){
+        return isbnFilter.stats();
+    }
+
+    @GetMapping("availability/stats")
+    public AvailabilityStats availabilityStats(){
+        return availabilityIndex.stats();
+    }
+
+    @GetMapping("contention")//livros mais disputados nos emprestimos
+    public List<BookContentionStats> contention(@RequestParam(defaultValue = "20") int limit){
+        return bookLocks.hottest(limit);
+    }
+}
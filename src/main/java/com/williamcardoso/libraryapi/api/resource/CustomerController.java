@@ -0,0 +1,38 @@
+package com.williamcardoso.libraryapi.api.resource;
+
+import com.williamcardoso.libraryapi.api.dto.LoanSliceDto;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import com.williamcardoso.libraryapi.service.CustomerService;
+import com.williamcardoso.libraryapi.service.LoanCursor;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/api/customers")
+@RequiredArgsConstructor
+public class CustomerController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final CustomerService service;
+
+    @GetMapping("{id}/loans")
+    @ApiOperation("Finds the loans of a customer, most recent first, using a cursor (after)")
+    public LoanSliceDto loans(@PathVariable Long id, @RequestParam(required = false) String after,
+                              @RequestParam(defaultValue = "20") int size){
+
+        if ( size < 1 || size > MAX_PAGE_SIZE){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        LoanCursor cursor = after == null ? LoanCursor.first() : LoanCursor.decode(after);
+        Slice<LoanHistory> result = service.findLoans(id, cursor, size);
+
+        String next = result.hasNext() ? LoanCursor.after(result.getContent().get(result.getNumberOfElements() - 1)).encode() : null;
+        return LoanSliceDto.builder().content(result.getContent()).size(result.getSize()).hasNext(result.hasNext()).next(next).build();
+    }
+}
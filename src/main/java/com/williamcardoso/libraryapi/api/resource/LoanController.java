@@ -1,24 +1,46 @@
 package com.williamcardoso.libraryapi.api.resource;
 
+import com.williamcardoso.libraryapi.api.dto.LoanBatchDto;
+import com.williamcardoso.libraryapi.api.dto.LoanBatchItemDto;
+import com.williamcardoso.libraryapi.api.dto.LoanBatchRequestDto;
 import com.williamcardoso.libraryapi.api.dto.LoanDto;
+import com.williamcardoso.libraryapi.api.dto.ReturnedLoanDto;
+import com.williamcardoso.libraryapi.api.mapper.LoanMapper;
 import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Customer;
 import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
 import com.williamcardoso.libraryapi.service.BookService;
+import com.williamcardoso.libraryapi.service.CustomerService;
+import com.williamcardoso.libraryapi.service.LoanBatchMode;
+import com.williamcardoso.libraryapi.service.LoanBatchResult;
 import com.williamcardoso.libraryapi.service.LoanService;
+import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.time.LocalDate;
+import javax.validation.Valid;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/loans")
 @RequiredArgsConstructor//enjeção e criação porem com as variaveis como final
 public class LoanController {
 
+    private static final int MAX_BATCH_SIZE = 100;
+
     private final LoanService service;
     private final BookService bookService;
+    private final CustomerService customerService;
+    private final LoanMapper loanMapper;
 
     @PostMapping()
     @ResponseStatus(HttpStatus.CREATED)
@@ -26,14 +48,56 @@ public class LoanController {
 
         Book book = bookService.getBookByIsbn(dto.getIsbn())
                 .orElseThrow( () -> new ResponseStatusException(HttpStatus.BAD_REQUEST,"Book not found for passed isbn"));
-        Loan entity = Loan.builder()
-                .book(book)
-                .customer(dto.getCustomer())
-                .loandate(LocalDate.now())
-                .build()
-                ;
+        Loan entity = loanMapper.toEntity(dto, book, customerService.getOrCreate(dto.getCustomer()));
         entity = service.save(entity);
         return entity.getId();
 
     }
+
+    //mesmo cadastro com group commit: a resposta sai quando o lote com o emprestimo é gravado
+    @PostMapping("async")
+    @ApiOperation("Creates a loan, committed together with other pending loans")
+    public CompletableFuture<ResponseEntity<Long>> createAsync(@RequestBody LoanDto dto){
+
+        Book book = bookService.getBookByIsbn(dto.getIsbn())
+                .orElseThrow( () -> new ResponseStatusException(HttpStatus.BAD_REQUEST,"Book not found for passed isbn"));
+        return service.saveAsync(loanMapper.toEntity(dto, book, customerService.getOrCreate(dto.getCustomer())))
+                .thenApply( loan -> ResponseEntity.status(HttpStatus.CREATED).body(loan.getId()));
+    }
+
+    @PostMapping("batch")
+    @ApiOperation("Creates the loans of several books for one customer")
+    public LoanBatchDto createBatch(@RequestBody LoanBatchRequestDto dto){
+
+        if ( dto.getIsbns() == null || dto.getIsbns().isEmpty() || dto.getIsbns().size() > MAX_BATCH_SIZE){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Isbns must have between 1 and " + MAX_BATCH_SIZE + " items");
+        }
+        Customer customer = customerService.getOrCreate(dto.getCustomer());
+        LoanBatchMode mode = dto.getMode() == null ? LoanBatchMode.ALL_OR_NOTHING : dto.getMode();
+        List<LoanBatchResult> results = service.saveAll(customer, dto.getIsbns(), mode);
+
+        LoanBatchDto summary = new LoanBatchDto();
+        for ( int i = 0; i < results.size(); i++){
+            LoanBatchResult result = results.get(i);
+            summary.add(LoanBatchItemDto.builder().index(i).isbn(dto.getIsbns().get(i)).id(result.getId()).status(result.getStatus())
+                    .errors(result.getMessage() == null ? null : Arrays.asList(result.getMessage())).build());
+        }
+        return summary;
+    }
+
+    @PatchMapping("{id}")
+    @ApiOperation("Returns a loaned book")
+    public void returnBook(@PathVariable Long id, @RequestBody @Valid ReturnedLoanDto dto){
+
+        Loan loan = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        loan.setReturned(dto.getReturned());
+        service.update(loan);
+    }
+
+    @GetMapping("history")
+    @ApiOperation("Finds loans by isbn or customer, including archived ones")
+    public Page<LoanHistory> history(@RequestParam(required = false) String isbn,
+                                     @RequestParam(required = false) String customer, Pageable pageRequest){
+        return service.history(isbn, customer, pageRequest);
+    }
 }
@@ -0,0 +1,65 @@
+package com.williamcardoso.libraryapi.config;
+
+import com.williamcardoso.libraryapi.service.cache.BookCache;
+import com.williamcardoso.libraryapi.service.cache.BookSearchCache;
+import com.williamcardoso.libraryapi.service.impl.LoanWriter;
+import com.williamcardoso.libraryapi.service.index.AvailabilityIndex;
+import com.williamcardoso.libraryapi.service.index.IsbnFilter;
+import com.williamcardoso.libraryapi.service.job.LoanArchiver;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean //lido apenas quando as metricas são coletadas, nada muda no caminho das requisições
+    public MeterBinder bookCacheMetrics(BookCache cache){
+        return registry -> {
+            Gauge.builder("library.books.cache.size", cache, c -> c.stats().getSize()).register(registry);
+            FunctionCounter.builder("library.books.cache.requests", cache, c -> c.stats().getHits()).tag("result", "hit").register(registry);
+            FunctionCounter.builder("library.books.cache.requests", cache, c -> c.stats().getMisses()).tag("result", "miss").register(registry);
+            FunctionCounter.builder("library.books.cache.evictions", cache, c -> c.stats().getEvictions()).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder bookSearchCacheMetrics(BookSearchCache cache){
+        return registry -> {
+            Gauge.builder("library.books.search.cache.size", cache, c -> c.stats().getSize()).register(registry);
+            FunctionCounter.builder("library.books.search.cache.requests", cache, c -> c.stats().getHits()).tag("result", "hit").register(registry);
+            FunctionCounter.builder("library.books.search.cache.requests", cache, c -> c.stats().getMisses()).tag("result", "miss").register(registry);
+            FunctionCounter.builder("library.books.search.cache.stale", cache, c -> c.stats().getStale()).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder isbnFilterMetrics(IsbnFilter filter){
+        return registry -> {
+            Gauge.builder("library.books.isbn.filter.memory", filter, f -> f.stats().getMemoryBytes()).baseUnit("bytes").register(registry);
+            Gauge.builder("library.books.isbn.filter.false.positive.rate", filter, f -> f.stats().getExpectedFalsePositiveRate()).register(registry);
+            FunctionCounter.builder("library.books.isbn.filter.negatives", filter, f -> f.stats().getNegatives()).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder availabilityIndexMetrics(AvailabilityIndex index){
+        return registry -> {
+            Gauge.builder("library.loans.availability.loaned", index, i -> i.stats().getLoanedBooks()).register(registry);
+            Gauge.builder("library.loans.availability.memory", index, i -> i.stats().getMemoryBytes()).baseUnit("bytes").register(registry);
+            FunctionCounter.builder("library.loans.availability.mismatches", index, i -> i.stats().getMismatches()).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder loanWriterMetrics(LoanWriter writer){
+        return registry -> Gauge.builder("library.loans.group.commit.pending", writer, LoanWriter::pending).register(registry);
+    }
+
+    @Bean
+    public MeterBinder loanArchiverMetrics(LoanArchiver archiver){
+        return registry -> FunctionCounter.builder("library.loans.archived", archiver, LoanArchiver::archived).register(registry);
+    }
+}
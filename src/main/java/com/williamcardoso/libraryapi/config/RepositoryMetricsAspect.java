@@ -0,0 +1,60 @@
+package com.williamcardoso.libraryapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// tempo de cada metodo dos repositorios (library.repository{repository, method})
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+    static final String METRIC = "library.repository";
+
+    private final MeterRegistry registry;
+    private final Map<Class<?>, Map<Method, Timer>> timers = new ConcurrentHashMap<>();//timer criado uma vez por metodo, sem lookup no registry a cada chamada
+
+    public RepositoryMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    //metodos de Stream medem apenas a abertura da consulta, a leitura acontece depois no consumo
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer timer = timer(joinPoint.getThis().getClass(), ((MethodSignature) joinPoint.getSignature()).getMethod());
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(Class<?> proxy, Method method) {
+        return timers.computeIfAbsent(proxy, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, key -> Timer.builder(METRIC)
+                        .description("Tempo das chamadas aos repositorios")
+                        .tag("repository", repositoryName(proxy))
+                        .tag("method", method.getName())
+                        .register(registry));
+    }
+
+    private String repositoryName(Class<?> proxy) {//interface da aplicação implementada pelo proxy do spring data
+        for ( Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(proxy)){
+            if ( type.getName().startsWith("com.williamcardoso.libraryapi.model.repository")){
+                return type.getSimpleName();
+            }
+        }
+        return proxy.getSimpleName();
+    }
+}
@@ -0,0 +1,7 @@
+package com.williamcardoso.libraryapi.exception;
+
+public class ServiceBusyException extends RuntimeException {
+    public ServiceBusyException(String mensagem) {
+        super(mensagem);
+    }
+}
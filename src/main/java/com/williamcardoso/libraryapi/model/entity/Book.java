@@ -6,15 +6,25 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity//mapeando a entitade para o banco de dados
+@Table(uniqueConstraints = @UniqueConstraint(name = Book.ISBN_CONSTRAINT, columnNames = "isbn"),//indice unico do isbn
+        indexes = {//indices para a paginação por cursor (ordenação + id como desempate)
+                @Index(name = "idx_book_title_id", columnList = "title, id"),
+                @Index(name = "idx_book_author_id", columnList = "author, id"),
+                @Index(name = "idx_book_id_version", columnList = "id, version, updated_at")})//conferencia do ETag somente pelo indice
 public class Book {
+
+    public static final String ISBN_CONSTRAINT = "uk_book_isbn";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)//ids reservados em blocos(pooled), IDENTITY desliga o insert em lote
     private Long id;
     @Column
     private String title;
@@ -22,5 +32,15 @@ public class Book {
     private String author;
     @Column
     private String isbn;
+    @Version//incrementada a cada update, que falha se outro pedido alterou o livro antes (ETag e If-Match)
+    @Column(nullable = false)
+    private Long version;
+    @Column(name = "updated_at")
+    private Instant updatedAt;//Last-Modified
 
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = Instant.now();
+    }
 }
@@ -0,0 +1,26 @@
+package com.williamcardoso.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = Customer.NAME_CONSTRAINT, columnNames = "name"))
+public class Customer {
+
+    public static final String NAME_CONSTRAINT = "uk_customer_name";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
+    private Long id;
+    @Column(length = 100, nullable = false)
+    private String name;
+}
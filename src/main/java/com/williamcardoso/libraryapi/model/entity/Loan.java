@@ -1,22 +1,53 @@
 package com.williamcardoso.libraryapi.model.entity;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
+import javax.persistence.*;
 import java.time.LocalDate;
 
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = Loan.ACTIVE_LOAN_CONSTRAINT, columnNames = "active_book_id"),//no maximo um emprestimo ativo por livro
+        indexes = {
+                @Index(name = "idx_loan_book_returned", columnList = "book_id, returned"),
+                @Index(name = "idx_loan_returned_loandate", columnList = "returned, loandate, id"),//varredura de atrasados por data
+                @Index(name = "idx_loan_customer_loandate", columnList = "customer_id, loandate, id")})//historico do cliente por cursor
 public class Loan {
 
+    public static final String ACTIVE_LOAN_CONSTRAINT = "uk_loan_active_book";
+    public static final String BOOK_FOREIGN_KEY = "fk_loan_book";
+    public static final String CUSTOMER_FOREIGN_KEY = "fk_loan_customer";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private  Long id;
-    private String customer;
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)//a linha guarda apenas o customer_id
+    @JoinColumn(name = "customer_id", nullable = false, foreignKey = @ForeignKey(name = CUSTOMER_FOREIGN_KEY))
+    private Customer customer;
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)//a linha guarda apenas o book_id
+    @JoinColumn(name = "book_id", nullable = false, foreignKey = @ForeignKey(name = BOOK_FOREIGN_KEY))
     private Book book;
+    @Column
     private LocalDate loandate;
-    private  Boolean returned;//indicar se o livro foi devolvido
+    @Column(nullable = false)
+    @Builder.Default
+    private  Boolean returned = false;//indicar se o livro foi devolvido
+    @Column(name = "active_book_id")
+    @Setter(AccessLevel.NONE)
+    private Long activeBookId;//id do livro enquanto não devolvido, null depois; o indice unico ignora os nulls
 
+    @PrePersist
+    @PreUpdate
+    void updateActiveBook() {
+        activeBookId = Boolean.TRUE.equals(returned) ? null : book.getId();
+    }
 }
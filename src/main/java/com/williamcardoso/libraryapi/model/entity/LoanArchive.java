@@ -0,0 +1,37 @@
+package com.williamcardoso.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+// emprestimos devolvidos ha muito tempo, movidos da tabela loan pelo LoanArchiver; guarda o isbn para o historico sobreviver ao livro
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_loan_archive_isbn", columnList = "isbn, loandate"),
+        @Index(name = "idx_loan_archive_customer", columnList = "customer, loandate"),
+        @Index(name = "idx_loan_archive_customer_id", columnList = "customer_id, loandate, id")})//historico do cliente por cursor
+public class LoanArchive {
+
+    @Id
+    private Long id;//mesmo id do emprestimo original
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+    @Column(length = 100)
+    private String isbn;
+    @Column(name = "customer_id")
+    private Long customerId;
+    @Column(length = 100)
+    private String customer;//nome do cliente no momento do arquivamento
+    @Column
+    private LocalDate loandate;
+    @Column
+    private LocalDate archivedAt;
+}
@@ -0,0 +1,28 @@
+package com.williamcardoso.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDate;
+
+// marca d'agua das varreduras em segundo plano: a proxima execução continua depois do ultimo registro processado
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+public class ScanCheckpoint {
+
+    @Id
+    @Column(length = 50)
+    private String name;
+    @Column
+    private LocalDate lastDate;
+    @Column
+    private Long lastId;
+}
@@ -0,0 +1,17 @@
+package com.williamcardoso.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// quantidade de emprestimos de um livro, usada como popularidade nas sugestões
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookLoanCount {
+
+    private Long bookId;
+    private Long loans;
+}
@@ -0,0 +1,20 @@
+package com.williamcardoso.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// versão e data de alteração de um livro, o suficiente para responder 304 sem carregar o livro
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookVersion {
+
+    private Long id;
+    private Long version;
+    private Instant updatedAt;
+}
@@ -0,0 +1,20 @@
+package com.williamcardoso.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// livro lido por projeção: só as colunas, sem entidade gerenciada nem snapshot para o dirty checking
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookView {
+
+    private Long id;
+    private String title;
+    private String author;
+    private String isbn;
+    private Long version;//ETag fraco da pagina, não vai para o BookDto
+}
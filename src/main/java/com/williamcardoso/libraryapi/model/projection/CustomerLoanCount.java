@@ -0,0 +1,17 @@
+package com.williamcardoso.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// emprestimos ativos de um cliente, usada na conferencia do contador em memória
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerLoanCount {
+
+    private Long customerId;
+    private Long loans;
+}
@@ -0,0 +1,24 @@
+package com.williamcardoso.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// linha do historico de emprestimos, vinda da tabela loan ou do arquivo
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanHistory {
+
+    private Long id;
+    private Long bookId;
+    private String isbn;
+    private String customer;
+    private LocalDate loandate;
+    private Boolean returned;
+    private Boolean archived;
+}
@@ -0,0 +1,22 @@
+package com.williamcardoso.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// linha do relatorio de atrasados, lida por projeção sem carregar as entidades
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueLoan {
+
+    private Long id;
+    private Long bookId;
+    private String isbn;
+    private String customer;
+    private LocalDate loandate;
+}
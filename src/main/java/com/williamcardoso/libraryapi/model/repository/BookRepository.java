@@ -1,13 +1,64 @@
 package com.williamcardoso.libraryapi.model.repository;
 
 import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.projection.BookVersion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+import static org.hibernate.annotations.QueryHints.FETCH_SIZE;
+import static org.hibernate.annotations.QueryHints.READ_ONLY;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
 
     boolean existsByIsbn(String isbn);
 
     Optional<Book> findByIsbn(String isbn);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    @Query("select b.isbn from Book b where b.isbn in :isbns")//apenas os isbns que ja existem, usando o indice unico
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    @QueryHints({ @QueryHint(name = FETCH_SIZE, value = "1000"), @QueryHint(name = READ_ONLY, value = "true") })
+    @Query("select b.isbn from Book b")//somente a coluna, sem montar as entidades
+    Stream<String> streamIsbns();
+
+    @Query("select new com.williamcardoso.libraryapi.model.projection.BookVersion(b.id, b.version, b.updatedAt)" +
+            " from Book b where b.id = :id")//coberta pelo idx_book_id_version, não lê a linha do livro
+    Optional<BookVersion> findVersion(@Param("id") Long id);
+
+    //um unico update pela chave, sem carregar o livro; campos null são mantidos e version null não confere a versão
+    @Transactional
+    @Modifying
+    @Query("update Book b set b.title = coalesce(:title, b.title), b.author = coalesce(:author, b.author)," +
+            " b.version = b.version + 1, b.updatedAt = :updatedAt" +
+            " where b.id = :id and (:version is null or b.version = :version)")
+    int patchIfMatches(@Param("id") Long id, @Param("title") String title, @Param("author") String author,
+                       @Param("version") Long version, @Param("updatedAt") Instant updatedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Book b where b.id = :id and (:version is null or b.version = :version)")
+    int deleteIfMatches(@Param("id") Long id, @Param("version") Long version);
+
+    //cursor somente para frente, lido aos poucos do banco (fetch size) sem carregar a tabela inteira
+    @QueryHints({ @QueryHint(name = FETCH_SIZE, value = "500"), @QueryHint(name = READ_ONLY, value = "true") })
+    @Query("select b from Book b where (:id is null or b.id = :id)" +
+            " and (:title is null or lower(b.title) like :title escape '\\')" +//valores escapados no BookServiceImpl.containing
+            " and (:author is null or lower(b.author) like :author escape '\\')" +
+            " and (:isbn is null or lower(b.isbn) like :isbn escape '\\')" +
+            " order by b.id")
+    Stream<Book> streamAll(@Param("id") Long id, @Param("title") String title,
+                           @Param("author") String author, @Param("isbn") String isbn);
 }
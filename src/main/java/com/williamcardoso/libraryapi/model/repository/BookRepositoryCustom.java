@@ -0,0 +1,27 @@
+package com.williamcardoso.libraryapi.model.repository;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.projection.BookView;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+// consultas que o spring data não gera sozinho, implementadas em BookRepositoryCustomImpl
+public interface BookRepositoryCustom {
+
+    //busca por cursor (keyset): os proximos livros depois de (afterKey, afterId) na ordenação, sem offset e sem count
+    List<Book> findAfter(Example<Book> example, String property, Sort.Direction direction,
+                         Object afterKey, Long afterId, int limit);
+
+    //conteudo da pagina do findAll(example, pageable) sem o count; extra linhas a mais dizem se existe a proxima pagina
+    @Transactional(readOnly = true)
+    List<Book> findPage(Example<Book> example, Pageable pageable, int extra);
+
+    //a mesma pagina só com as colunas do BookView, sem entidades no contexto;
+    //sessão somente leitura, a conexão volta ao pool ao fim da consulta
+    @Transactional(readOnly = true)
+    List<BookView> findViews(Example<Book> example, Pageable pageable, int extra);
+}
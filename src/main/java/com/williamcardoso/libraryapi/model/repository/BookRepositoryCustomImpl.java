@@ -0,0 +1,92 @@
+package com.williamcardoso.libraryapi.model.repository;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.projection.BookView;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.convert.QueryByExamplePredicateBuilder;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Book> findAfter(Example<Book> example, String property, Sort.Direction direction,
+                                Object afterKey, Long afterId, int limit) {
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = cb.createQuery(Book.class);
+        Root<Book> root = query.from(Book.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate filter = QueryByExamplePredicateBuilder.getPredicate(root, cb, example);//mesmo filtro do find
+        if ( filter != null){
+            predicates.add(filter);
+        }
+
+        boolean asc = direction.isAscending();
+        Path<Long> id = root.get("id");
+        if ( afterId != null){
+            if ( "id".equals(property)){
+                predicates.add(asc ? cb.greaterThan(id, afterId) : cb.lessThan(id, afterId));
+            } else {
+                Path<Comparable<Object>> key = root.get(property);
+                Comparable<Object> last = (Comparable<Object>) afterKey;
+                //(key, id) depois do ultimo visto: key maior, ou key igual e id maior
+                predicates.add(cb.or(
+                        asc ? cb.greaterThan(key, last) : cb.lessThan(key, last),
+                        cb.and(cb.equal(key, last), asc ? cb.greaterThan(id, afterId) : cb.lessThan(id, afterId))));
+            }
+        }
+
+        List<Order> orders = new ArrayList<>();
+        if ( !"id".equals(property)){
+            orders.add(asc ? cb.asc(root.get(property)) : cb.desc(root.get(property)));
+        }
+        orders.add(asc ? cb.asc(id) : cb.desc(id));
+
+        query.select(root).where(predicates.toArray(new Predicate[0])).orderBy(orders);
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<Book> findPage(Example<Book> example, Pageable pageable, int extra) {
+        CriteriaQuery<Book> query = entityManager.getCriteriaBuilder().createQuery(Book.class);
+        return page(query, query.from(Book.class), example, pageable, extra);
+    }
+
+    @Override
+    public List<BookView> findViews(Example<Book> example, Pageable pageable, int extra) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookView> query = cb.createQuery(BookView.class);
+        Root<Book> root = query.from(Book.class);
+        query.select(cb.construct(BookView.class, root.get("id"), root.get("title"), root.get("author"), root.get("isbn"), root.get("version")));
+        return page(query, root, example, pageable, extra);
+    }
+
+    private <T> List<T> page(CriteriaQuery<T> query, Root<Book> root, Example<Book> example, Pageable pageable, int extra) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        Predicate filter = QueryByExamplePredicateBuilder.getPredicate(root, cb, example);
+        if ( filter != null){
+            query.where(filter);
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+
+        TypedQuery<T> typedQuery = entityManager.createQuery(query);
+        if ( pageable.isPaged()){
+            typedQuery.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize() + extra);
+        }
+        return typedQuery.getResultList();
+    }
+}
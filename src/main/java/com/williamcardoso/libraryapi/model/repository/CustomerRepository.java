@@ -0,0 +1,11 @@
+package com.williamcardoso.libraryapi.model.repository;
+
+import com.williamcardoso.libraryapi.model.entity.Customer;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface CustomerRepository extends JpaRepository<Customer, Long> {
+
+    Optional<Customer> findByName(String name);
+}
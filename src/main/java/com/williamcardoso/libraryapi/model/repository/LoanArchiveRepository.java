@@ -0,0 +1,44 @@
+package com.williamcardoso.libraryapi.model.repository;
+
+import com.williamcardoso.libraryapi.model.entity.LoanArchive;
+import com.williamcardoso.libraryapi.model.projection.BookLoanCount;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface LoanArchiveRepository extends JpaRepository<LoanArchive, Long> {
+
+    //copia no proprio banco (insert ... select), os emprestimos não passam pela aplicação
+    @Modifying
+    @Query("insert into LoanArchive (id, bookId, isbn, customerId, customer, loandate, archivedAt)" +
+            " select l.id, b.id, b.isbn, c.id, c.name, l.loandate, :archivedAt" +
+            " from Loan l join l.book b join l.customer c where l.id in :ids and l.returned = true")
+    int archive(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDate archivedAt);
+
+    @Query(value = "select new com.williamcardoso.libraryapi.model.projection.LoanHistory(a.id, a.bookId, a.isbn, a.customer, a.loandate, true, true)" +
+            " from LoanArchive a where (:isbn is null or a.isbn = :isbn) and (:customer is null or a.customer = :customer)" +
+            " order by a.loandate desc, a.id desc",
+            countQuery = "select count(a.id) from LoanArchive a" +
+                    " where (:isbn is null or a.isbn = :isbn) and (:customer is null or a.customer = :customer)")
+    Page<LoanHistory> findHistory(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
+
+    //mesmo cursor do LoanRepository.findByCustomerBefore, pelo indice (customer_id, loandate, id)
+    @Query("select new com.williamcardoso.libraryapi.model.projection.LoanHistory(a.id, a.bookId, a.isbn, a.customer, a.loandate, true, true)" +
+            " from LoanArchive a" +
+            " where a.customerId = :customerId and (a.loandate < :lastDate or (a.loandate = :lastDate and a.id < :lastId))" +
+            " order by a.loandate desc, a.id desc")
+    List<LoanHistory> findByCustomerBefore(@Param("customerId") Long customerId, @Param("lastDate") LocalDate lastDate,
+                                           @Param("lastId") Long lastId, Pageable pageable);
+
+    @Query("select new com.williamcardoso.libraryapi.model.projection.BookLoanCount(a.bookId, count(a.id))" +
+            " from LoanArchive a group by a.bookId")
+    List<BookLoanCount> countByBook();
+}
@@ -2,8 +2,89 @@ package com.williamcardoso.libraryapi.model.repository;
 
 import com.williamcardoso.libraryapi.model.entity.Book;
 import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.projection.BookLoanCount;
+import com.williamcardoso.libraryapi.model.projection.CustomerLoanCount;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import com.williamcardoso.libraryapi.model.projection.OverdueLoan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.annotations.QueryHints.FETCH_SIZE;
+import static org.hibernate.annotations.QueryHints.READ_ONLY;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
-    boolean existsByBookAndNotReturned(Book book);
+
+    @Override
+    @EntityGraph(attributePaths = { "book", "customer" })//livro e cliente vêm no mesmo select, usados fora da transação
+    Optional<Loan> findById(Long id);
+
+    @Query("select case when count(l.id) > 0 then true else false end" +
+            " from Loan l where l.book = :book and l.returned = false")//usa o indice (book_id, returned)
+    boolean existsByBookAndNotReturned(@Param("book") Book book);
+
+    @Query("select l.returned from Loan l where l.id = :id")//estado gravado, não o da entidade alterada pelo controller
+    Optional<Boolean> findReturnedById(@Param("id") Long id);
+
+    @QueryHints({ @QueryHint(name = FETCH_SIZE, value = "1000"), @QueryHint(name = READ_ONLY, value = "true") })
+    @Query("select l.activeBookId from Loan l where l.activeBookId is not null")//somente o indice unico do emprestimo ativo
+    Stream<Long> streamLoanedBookIds();
+
+    @Query("select new com.williamcardoso.libraryapi.model.projection.BookLoanCount(l.book.id, count(l.id))" +
+            " from Loan l group by l.book.id")
+    List<BookLoanCount> countByBook();
+
+    @Query("select l.activeBookId from Loan l where l.activeBookId in :bookIds")
+    List<Long> findLoanedBookIds(@Param("bookIds") Collection<Long> bookIds);
+
+    //proximo bloco de emprestimos abertos até a data de corte, depois da marca (loandate, id) da ultima varredura
+    @Query("select new com.williamcardoso.libraryapi.model.projection.OverdueLoan(l.id, b.id, b.isbn, c.name, l.loandate)" +
+            " from Loan l join l.book b join l.customer c" +
+            " where l.returned = false and l.loandate <= :cutoff" +
+            " and (l.loandate > :lastDate or (l.loandate = :lastDate and l.id > :lastId))" +
+            " order by l.loandate, l.id")
+    List<OverdueLoan> findOverdueAfter(@Param("cutoff") LocalDate cutoff, @Param("lastDate") LocalDate lastDate,
+                                       @Param("lastId") Long lastId, Pageable pageable);
+
+    //devolvidos antes da data de corte, na ordem do indice (returned, loandate, id)
+    @Query("select l.id from Loan l where l.returned = true and l.loandate < :cutoff order by l.loandate, l.id")
+    List<Long> findReturnedBefore(@Param("cutoff") LocalDate cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("delete from Loan l where l.id in :ids and l.returned = true")
+    int deleteReturned(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "select new com.williamcardoso.libraryapi.model.projection.LoanHistory(l.id, b.id, b.isbn, c.name, l.loandate, l.returned, false)" +
+            " from Loan l join l.book b join l.customer c where (:isbn is null or b.isbn = :isbn) and (:customer is null or c.name = :customer)" +
+            " order by l.loandate desc, l.id desc",
+            countQuery = "select count(l.id) from Loan l join l.book b join l.customer c" +
+                    " where (:isbn is null or b.isbn = :isbn) and (:customer is null or c.name = :customer)")
+    Page<LoanHistory> findHistory(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
+
+    //emprestimos do cliente depois do cursor (loandate, id), mais recentes primeiro, pelo indice (customer_id, loandate, id)
+    @Query("select new com.williamcardoso.libraryapi.model.projection.LoanHistory(l.id, b.id, b.isbn, c.name, l.loandate, l.returned, false)" +
+            " from Loan l join l.book b join l.customer c" +
+            " where l.customer.id = :customerId and (l.loandate < :lastDate or (l.loandate = :lastDate and l.id < :lastId))" +
+            " order by l.loandate desc, l.id desc")
+    List<LoanHistory> findByCustomerBefore(@Param("customerId") Long customerId, @Param("lastDate") LocalDate lastDate,
+                                           @Param("lastId") Long lastId, Pageable pageable);
+
+    @Query("select count(l.id) from Loan l where l.customer.id = :customerId and l.returned = false")
+    long countActiveByCustomer(@Param("customerId") Long customerId);
+
+    @Query("select new com.williamcardoso.libraryapi.model.projection.CustomerLoanCount(l.customer.id, count(l.id))" +
+            " from Loan l where l.customer.id in :customerIds and l.returned = false group by l.customer.id")
+    List<CustomerLoanCount> countActiveByCustomers(@Param("customerIds") Collection<Long> customerIds);
 }
@@ -0,0 +1,7 @@
+package com.williamcardoso.libraryapi.model.repository;
+
+import com.williamcardoso.libraryapi.model.entity.ScanCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ScanCheckpointRepository extends JpaRepository<ScanCheckpoint, String> {
+}
@@ -0,0 +1,23 @@
+package com.williamcardoso.libraryapi.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookBatchResult {
+    // resultado de cada livro enviado no cadastro em lote
+
+    private Long id;
+    private String isbn;
+    private Status status;
+    private String message;
+
+    public enum Status {
+        CREATED, INVALID, DUPLICATED, FAILED
+    }
+}
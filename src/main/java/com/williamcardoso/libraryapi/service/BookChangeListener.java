@@ -0,0 +1,16 @@
+package com.williamcardoso.libraryapi.service;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+
+// avisado pelo BookService depois de cada alteração no cadastro de livros(indices e caches em memória)
+public interface BookChangeListener {
+
+    void saved(Book book);//livro criado ou atualizado
+
+    default void created(Book book) {//livro novo, avisado antes do saved
+    }
+
+    void patched(Book changes);//alterado direto no banco: id e somente os campos alterados, os demais null
+
+    void deleted(Long id);
+}
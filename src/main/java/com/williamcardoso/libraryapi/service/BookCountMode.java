@@ -0,0 +1,8 @@
+package com.williamcardoso.libraryapi.service;
+
+// como o total da busca paginada é obtido
+public enum BookCountMode {
+    EXACT,//count a cada busca (sem filtro usa o contador do cadastro, que é exato)
+    CACHED,//count guardado por filtro por alguns segundos, o total pode estar um pouco defasado
+    NONE//sem count, apenas se existe a proxima pagina
+}
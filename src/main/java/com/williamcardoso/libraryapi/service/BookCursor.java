@@ -0,0 +1,63 @@
+package com.williamcardoso.libraryapi.service;
+
+import com.williamcardoso.libraryapi.exception.BusinessEsception;
+import com.williamcardoso.libraryapi.model.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class BookCursor {
+    // posição da busca por cursor: a ordenação e o ultimo (chave, id) visto. Vai para o cliente como um token opaco
+
+    private static final List<String> PROPERTIES = Arrays.asList("id", "title", "author");//ordenações com indice
+
+    private final String property;
+    private final Sort.Direction direction;
+    private final String key;
+    private final Long id;
+
+    public static BookCursor first(Sort sort) {
+        Sort.Order order = sort.stream().findFirst().orElse(Sort.Order.asc("id"));
+        if ( !PROPERTIES.contains(order.getProperty())){
+            throw new BusinessEsception("Invalid sort property for cursor: " + order.getProperty());
+        }
+        return new BookCursor(order.getProperty(), order.getDirection(), null, null);
+    }
+
+    public BookCursor next(Book last) {
+        String lastKey = "title".equals(property) ? last.getTitle() : "author".equals(property) ? last.getAuthor() : null;
+        return new BookCursor(property, direction, lastKey, last.getId());
+    }
+
+    public Object getKeyValue() {//valor comparado na consulta, de acordo com a propriedade ordenada
+        return "id".equals(property) ? id : key;
+    }
+
+    public Sort getSort() {
+        return Sort.by(direction, property);
+    }
+
+    public String encode() {
+        String raw = property + ":" + direction + ":" + id + ":" + (key == null ? "" : key);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", 4);
+            if ( parts.length != 4 || !PROPERTIES.contains(parts[0])){
+                throw new IllegalArgumentException(token);
+            }
+            return new BookCursor(parts[0], Sort.Direction.fromString(parts[1]), parts[3], Long.valueOf(parts[2]));
+        } catch (IllegalArgumentException ex){//base64, direção ou id invalidos
+            throw new BusinessEsception("Invalid cursor.");
+        }
+    }
+}
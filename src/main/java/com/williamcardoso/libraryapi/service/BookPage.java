@@ -0,0 +1,21 @@
+package com.williamcardoso.libraryapi.service;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+// pagina da busca informando como o total foi obtido; com NONE o total só indica se existe a proxima pagina
+public class BookPage<T> extends PageImpl<T> {
+
+    private final BookCountMode countMode;
+
+    public BookPage(List<T> content, Pageable pageable, long total, BookCountMode countMode) {
+        super(content, pageable, total);
+        this.countMode = countMode;
+    }
+
+    public BookCountMode getCountMode() {
+        return countMode;
+    }
+}
@@ -1,10 +1,17 @@
 package com.williamcardoso.libraryapi.service;
 
 import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.projection.BookVersion;
+import com.williamcardoso.libraryapi.model.projection.BookView;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 // criando interface para facilitar os testes
 public interface BookService {
@@ -14,13 +21,35 @@ public interface BookService {
 
     Optional<Book> getById(Long id);
 
+    Optional<BookVersion> getVersion(Long id);
+
+    Map<Long, Book> getByIds(Collection<Long> ids);
+
     void delete(Book book);
 
+    boolean delete(Long id, Long version);
+
     Book update(Book book);
 
+    boolean patch(Book changes);
+
     Page<Book> find(Book filter, Pageable pageRequest);
 
+    BookPage<BookView> findViews(Book filter, Pageable pageRequest, BookCountMode countMode);
+
+    Slice<Book> findAfter(Book filter, BookCursor cursor, int size);
+
     Optional<Book> getBookByIsbn(String isbn);
+
+    Map<String, Book> getBooksByIsbns(Collection<String> isbns);
+
+    List<BookBatchResult> saveAll(List<Book> books);
+
+    void export(Book filter, Consumer<Book> consumer);
+
+    List<BookSuggestion> suggest(String prefix, int limit);
+
+    Page<Book> search(String query, Pageable pageRequest);
 }
 
 
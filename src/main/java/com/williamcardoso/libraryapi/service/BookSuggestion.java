@@ -0,0 +1,20 @@
+package com.williamcardoso.libraryapi.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSuggestion {
+    // livro sugerido pelo prefixo digitado, com a quantidade de emprestimos usada na ordenação
+
+    private Long id;
+    private String title;
+    private String author;
+    private String isbn;
+    private long loans;
+}
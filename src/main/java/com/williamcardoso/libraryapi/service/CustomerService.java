@@ -0,0 +1,16 @@
+package com.williamcardoso.libraryapi.service;
+
+import com.williamcardoso.libraryapi.model.entity.Customer;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import org.springframework.data.domain.Slice;
+
+import java.util.Optional;
+
+public interface CustomerService {
+
+    Customer getOrCreate(String name);
+
+    Optional<Customer> getById(Long id);
+
+    Slice<LoanHistory> findLoans(Long customerId, LoanCursor cursor, int size);
+}
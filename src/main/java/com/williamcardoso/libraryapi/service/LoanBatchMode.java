@@ -0,0 +1,7 @@
+package com.williamcardoso.libraryapi.service;
+
+// comportamento do emprestimo em lote quando algum livro não pode ser emprestado
+public enum LoanBatchMode {
+    ALL_OR_NOTHING,//nenhum emprestimo é gravado
+    BEST_EFFORT//grava os que puderem ser emprestados
+}
@@ -0,0 +1,23 @@
+package com.williamcardoso.libraryapi.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanBatchResult {
+    // resultado de cada isbn enviado no emprestimo em lote
+
+    private Long id;
+    private String isbn;
+    private Status status;
+    private String message;
+
+    public enum Status {
+        CREATED, DUPLICATED, NOT_FOUND, LOANED, LIMIT_REACHED, ABORTED, FAILED
+    }
+}
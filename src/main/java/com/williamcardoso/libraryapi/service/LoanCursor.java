@@ -0,0 +1,47 @@
+package com.williamcardoso.libraryapi.service;
+
+import com.williamcardoso.libraryapi.exception.BusinessEsception;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+@Getter
+@AllArgsConstructor
+public class LoanCursor {
+    // posição no historico do cliente (mais recentes primeiro): o ultimo (loandate, id) visto, como token opaco
+
+    private static final LoanCursor FIRST = new LoanCursor(LocalDate.of(9999, 12, 31), Long.MAX_VALUE);
+
+    private final LocalDate loandate;
+    private final Long id;
+
+    public static LoanCursor first() {
+        return FIRST;
+    }
+
+    public static LoanCursor after(LoanHistory last) {
+        return new LoanCursor(last.getLoandate(), last.getId());
+    }
+
+    public String encode() {
+        String raw = loandate + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static LoanCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", 2);
+            if ( parts.length != 2){
+                throw new IllegalArgumentException(token);
+            }
+            return new LoanCursor(LocalDate.parse(parts[0]), Long.valueOf(parts[1]));
+        } catch (IllegalArgumentException | DateTimeParseException ex){//base64, data ou id invalidos
+            throw new BusinessEsception("Invalid cursor.");
+        }
+    }
+}
@@ -1,7 +1,29 @@
 package com.williamcardoso.libraryapi.service;
 
+import com.williamcardoso.libraryapi.model.entity.Customer;
 import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public interface LoanService {
     Loan save(Loan loan);
+
+    CompletableFuture<Loan> saveAsync(Loan loan);
+
+    List<LoanBatchResult> saveAll(Customer customer, List<String> isbns, LoanBatchMode mode);
+
+    Optional<Loan> getById(Long id);
+
+    Loan update(Loan loan);
+
+    Set<Long> loanedAmong(Collection<Long> bookIds);
+
+    Page<LoanHistory> history(String isbn, String customer, Pageable pageable);
 }
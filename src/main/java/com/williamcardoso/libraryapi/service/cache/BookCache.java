@@ -0,0 +1,174 @@
+package com.williamcardoso.libraryapi.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.service.BookChangeListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// cache de leitura dos livros por id e por isbn, invalidado a cada save/update/delete do BookService
+@Component
+public class BookCache implements BookChangeListener {
+
+    private final Cache<Long, Book> books;//valor unico por livro, limitado por tamanho e tempo
+    private final Map<String, Long> idsByIsbn = new ConcurrentHashMap<>();//segundo indice, aponta para a mesma entrada
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLong invalidations = new AtomicLong();//lido antes de cada carga fora do caffeine, ver put
+
+    public BookCache(@Value("${library.books.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${library.books.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.books = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .executor(Runnable::run)//remoção do indice de isbn na mesma thread, sem janela com o indice desatualizado
+                .removalListener((Long id, Book book, RemovalCause cause) -> {
+                    if ( book != null && cause != RemovalCause.REPLACED){
+                        idsByIsbn.remove(book.getIsbn(), id);
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Book> getById(Long id, Function<Long, Optional<Book>> loader) {
+        Book cached = books.getIfPresent(id);
+        if ( cached != null){
+            hits.increment();
+            return Optional.of(cached.toBuilder().build());
+        }
+        misses.increment();
+        //carga atomica por id: um save concorrente espera a carga terminar e sobrescreve o valor lido
+        Book loaded = books.get(id, key -> loader.apply(key).map(book -> book.toBuilder().build()).orElse(null));
+        if ( loaded == null){
+            return Optional.empty();
+        }
+        idsByIsbn.put(loaded.getIsbn(), loaded.getId());
+        return Optional.of(loaded.toBuilder().build());
+    }
+
+    //somente o que ja está no cache, sem carga e sem contar nas estatisticas
+    public Optional<Book> getIfPresent(Long id) {
+        return Optional.ofNullable(books.getIfPresent(id)).map(book -> book.toBuilder().build());
+    }
+
+    public Optional<Book> getByIsbn(String isbn, Supplier<Optional<Book>> loader) {
+        Long id = idsByIsbn.get(isbn);
+        Book cached = id == null ? null : books.getIfPresent(id);
+        if ( cached != null && isbn.equals(cached.getIsbn())){
+            hits.increment();
+            return Optional.of(cached.toBuilder().build());
+        }
+        misses.increment();
+        long stamp = invalidations.get();
+        Optional<Book> loaded = loader.get();
+        loaded.ifPresent(book -> put(book, stamp));
+        return loaded;
+    }
+
+    //varios livros por id: os do cache direto, os que faltam em uma unica chamada ao loader
+    public Map<Long, Book> getAllById(Collection<Long> ids, Function<List<Long>, List<Book>> loader) {
+        Map<Long, Book> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for ( Long id : ids){
+            Book cached = books.getIfPresent(id);
+            if ( cached != null){
+                hits.increment();
+                found.put(id, cached.toBuilder().build());
+            } else {
+                misses.increment();
+                missing.add(id);
+            }
+        }
+        if ( !missing.isEmpty()){
+            long stamp = invalidations.get();
+            loader.apply(missing).forEach(book -> {
+                put(book, stamp);
+                found.put(book.getId(), book.toBuilder().build());
+            });
+        }
+        return found;
+    }
+
+    public Map<String, Book> getAllByIsbn(Collection<String> isbns, Function<List<String>, List<Book>> loader) {
+        Map<String, Book> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for ( String isbn : isbns){
+            Long id = idsByIsbn.get(isbn);
+            Book cached = id == null ? null : books.getIfPresent(id);
+            if ( cached != null && isbn.equals(cached.getIsbn())){
+                hits.increment();
+                found.put(isbn, cached.toBuilder().build());
+            } else {
+                misses.increment();
+                missing.add(isbn);
+            }
+        }
+        if ( !missing.isEmpty()){
+            long stamp = invalidations.get();
+            loader.apply(missing).forEach(book -> {
+                put(book, stamp);
+                found.put(book.getIsbn(), book.toBuilder().build());
+            });
+        }
+        return found;
+    }
+
+    @Override
+    public void saved(Book book) {
+        invalidate(book.getId());//o proximo get lê a versão gravada, o removalListener limpa o isbn antigo
+    }
+
+    @Override
+    public void patched(Book changes) {
+        invalidate(changes.getId());
+    }
+
+    @Override
+    public void deleted(Long id) {
+        invalidate(id);
+    }
+
+    private void invalidate(Long id) {
+        invalidations.incrementAndGet();//antes de remover: um put em andamento ou ve o contador novo ou é removido logo depois
+        books.invalidate(id);
+    }
+
+    public BookCacheStats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+        return BookCacheStats.builder()
+                .size(books.estimatedSize())
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRatio(requests == 0 ? 1.0 : (double) hitCount / requests)
+                .evictions(books.stats().evictionCount())
+                .build();
+    }
+
+    //só guarda se nenhum livro foi invalidado desde a leitura do contador: a carga pode ter lido a linha antiga
+    private void put(Book book, long stamp) {
+        Book copy = book.toBuilder().build();
+        books.asMap().compute(copy.getId(), (id, old) -> {
+            if ( invalidations.get() != stamp){
+                return old;//a invalidação ja removeu o antigo ou remove logo em seguida
+            }
+            if ( old != null && !old.getIsbn().equals(copy.getIsbn())){
+                idsByIsbn.remove(old.getIsbn(), id);
+            }
+            idsByIsbn.put(copy.getIsbn(), id);
+            return copy;
+        });
+    }
+}
@@ -0,0 +1,19 @@
+package com.williamcardoso.libraryapi.service.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookCacheStats {
+
+    private long size;
+    private long hits;
+    private long misses;
+    private double hitRatio;
+    private long evictions;
+}
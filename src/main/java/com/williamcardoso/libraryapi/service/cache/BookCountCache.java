@@ -0,0 +1,90 @@
+package com.williamcardoso.libraryapi.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.repository.BookRepository;
+import com.williamcardoso.libraryapi.service.BookChangeListener;
+import com.williamcardoso.libraryapi.service.BookCountMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// totais da busca paginada sem o count(*) a cada pagina: o total do cadastro mantido a cada criação/remoção
+// e conferido com a tabela de tempos em tempos, e os totais por filtro guardados por pouco tempo
+@Component
+public class BookCountCache implements BookChangeListener {
+
+    private final AtomicLong total = new AtomicLong();
+    private volatile boolean loaded;//antes da primeira carga o total sem filtro também vai ao banco
+    private final Cache<List<Object>, Long> counts;//filtro normalizado -> total
+
+    private final BookRepository repository;
+    private final TransactionTemplate transactionTemplate;
+
+    public BookCountCache(BookRepository repository, PlatformTransactionManager transactionManager,
+                          @Value("${library.books.count.maximum-size:1000}") long maximumSize,
+                          @Value("${library.books.count.expire-after-write:30s}") Duration expireAfterWrite) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    //corrige o contador com alterações feitas fora do service
+    @Scheduled(initialDelayString = "${library.books.count.check-interval:PT10M}",
+            fixedDelayString = "${library.books.count.check-interval:PT10M}")
+    public void reload() {
+        total.set(transactionTemplate.execute(status -> repository.count()));
+        loaded = true;
+    }
+
+    public long count(Book filter, BookCountMode mode, LongSupplier query) {
+        if ( loaded && isEmpty(filter)){
+            return total.get();
+        }
+        if ( mode == BookCountMode.CACHED){
+            return counts.get(BookSearchCache.filterKey(filter), key -> query.getAsLong());
+        }
+        return query.getAsLong();
+    }
+
+    @Override
+    public void created(Book book) {
+        total.incrementAndGet();
+    }
+
+    @Override
+    public void saved(Book book) {
+    }
+
+    @Override
+    public void patched(Book changes) {
+    }
+
+    @Override
+    public void deleted(Long id) {
+        total.decrementAndGet();
+    }
+
+    private boolean isEmpty(Book filter) {
+        return filter.getId() == null && filter.getTitle() == null && filter.getAuthor() == null && filter.getIsbn() == null;
+    }
+}
@@ -0,0 +1,125 @@
+package com.williamcardoso.libraryapi.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.service.BookChangeListener;
+import com.williamcardoso.libraryapi.service.BookCountMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// paginas da busca por filtro guardadas só com os ids e o total, os livros vêm do BookCache;
+// cada save/update/delete avança a geração e as paginas gravadas antes dela deixam de ser servidas
+@Component
+public class BookSearchCache implements BookChangeListener {
+
+    private final Cache<List<Object>, CachedPage> pages;//filtro normalizado + pagina + ordenação -> ids
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+
+    public BookSearchCache(@Value("${library.books.search-cache.maximum-size:1000}") long maximumSize,
+                           @Value("${library.books.search-cache.expire-after-write:1m}") Duration expireAfterWrite) {
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    //resolver monta os itens a partir dos ids guardados; se faltar algum (livro removido) a pagina é consultada de novo
+    public <T> Page<T> get(Book filter, Pageable pageable, BookCountMode countMode, Function<List<Long>, List<T>> resolver,
+                           Supplier<Page<T>> loader, Function<T, Long> idOf) {
+        if ( pageable.isUnpaged()){
+            return loader.get();
+        }
+        List<Object> key = new ArrayList<>(filterKey(filter));
+        key.addAll(Arrays.asList(pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().toString(), countMode));
+        long current = generation.get();//lida antes da consulta: uma alteração no meio do caminho invalida o resultado
+        CachedPage cached = pages.getIfPresent(key);
+        if ( cached != null && cached.generation == current){
+            List<Long> ids = Arrays.stream(cached.ids).boxed().collect(Collectors.toList());
+            List<T> content = resolver.apply(ids);
+            if ( content.size() == ids.size()){
+                hits.increment();
+                return new PageImpl<>(content, pageable, cached.total);
+            }
+        } else if ( cached != null){
+            stale.increment();
+        }
+        misses.increment();
+
+        Page<T> page = loader.get();
+        List<Long> ids = page.getContent().stream().map(idOf).collect(Collectors.toList());
+        if ( !ids.contains(null)){//sem id não tem como remontar a pagina
+            pages.put(key, new CachedPage(current, ids.stream().mapToLong(Long::longValue).toArray(), page.getTotalElements()));
+        }
+        return page;
+    }
+
+    @Override
+    public void saved(Book book) {
+        generation.incrementAndGet();
+    }
+
+    @Override
+    public void patched(Book changes) {
+        generation.incrementAndGet();
+    }
+
+    @Override
+    public void deleted(Long id) {
+        generation.incrementAndGet();
+    }
+
+    public BookSearchCacheStats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+        return BookSearchCacheStats.builder()
+                .size(pages.estimatedSize())
+                .generation(generation.get())
+                .hits(hitCount)
+                .misses(missCount)
+                .stale(stale.sum())
+                .hitRatio(requests == 0 ? 1.0 : (double) hitCount / requests)
+                .evictions(pages.stats().evictionCount())
+                .build();
+    }
+
+    //mesmo criterio do Example da busca: texto ignorando maiusculas, nulos fora do filtro
+    static List<Object> filterKey(Book filter) {
+        return Arrays.asList(filter.getId(), lower(filter.getTitle()), lower(filter.getAuthor()), lower(filter.getIsbn()));
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase();
+    }
+
+    private static final class CachedPage {
+
+        final long generation;
+        final long[] ids;
+        final long total;
+
+        CachedPage(long generation, long[] ids, long total) {
+            this.generation = generation;
+            this.ids = ids;
+            this.total = total;
+        }
+    }
+}
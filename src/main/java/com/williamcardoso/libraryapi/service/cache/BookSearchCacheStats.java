@@ -0,0 +1,21 @@
+package com.williamcardoso.libraryapi.service.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSearchCacheStats {
+
+    private long size;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long stale;//paginas encontradas mas gravadas antes da ultima alteração no cadastro
+    private double hitRatio;
+    private long evictions;
+}
@@ -2,37 +2,94 @@ package com.williamcardoso.libraryapi.service.impl;
 
 import com.williamcardoso.libraryapi.exception.BusinessEsception;
 import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.projection.BookVersion;
+import com.williamcardoso.libraryapi.model.projection.BookView;
 import com.williamcardoso.libraryapi.model.repository.BookRepository;
+import com.williamcardoso.libraryapi.service.BookBatchResult;
+import com.williamcardoso.libraryapi.service.BookChangeListener;
+import com.williamcardoso.libraryapi.service.BookCursor;
+import com.williamcardoso.libraryapi.service.BookCountMode;
+import com.williamcardoso.libraryapi.service.BookPage;
 import com.williamcardoso.libraryapi.service.BookService;
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import com.williamcardoso.libraryapi.service.BookSuggestion;
+import com.williamcardoso.libraryapi.service.cache.BookCache;
+import com.williamcardoso.libraryapi.service.cache.BookCountCache;
+import com.williamcardoso.libraryapi.service.cache.BookSearchCache;
+import com.williamcardoso.libraryapi.service.index.BookSearchIndex;
+import com.williamcardoso.libraryapi.service.index.BookSuggestIndex;
+import com.williamcardoso.libraryapi.service.index.IsbnFilter;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.repository.query.EscapeCharacter;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class BookServiceImpl implements BookService {
 
+    static final int LOOKUP_CHUNK_SIZE = 1000;//limite de parametros no "in" das consultas por isbn ou id
+
     private BookRepository repository;
+    private EntityManager entityManager;
+    private BookSearchIndex searchIndex;
+    private BookSuggestIndex suggestIndex;
+    private BookCache cache;
+    private BookSearchCache searchCache;
+    private BookCountCache countCache;
+    private IsbnFilter isbnFilter;
+    private List<BookChangeListener> listeners;//indices e caches avisados a cada alteração
 
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository, EntityManager entityManager,
+                           BookSearchIndex searchIndex, BookSuggestIndex suggestIndex, BookCache cache,
+                           BookSearchCache searchCache, BookCountCache countCache, IsbnFilter isbnFilter,
+                           List<BookChangeListener> listeners) {
         this.repository = repository;
+        this.entityManager = entityManager;
+        this.searchIndex = searchIndex;
+        this.suggestIndex = suggestIndex;
+        this.cache = cache;
+        this.searchCache = searchCache;
+        this.countCache = countCache;
+        this.isbnFilter = isbnFilter;
+        this.listeners = listeners;
     }
 
     @Override
     public Book save(Book book) {
-        if ( repository.existsByIsbn(book.getIsbn())){//exists é qery method do jpa
-
-            throw new BusinessEsception("Isbn já cadastrado.");
+        try {
+            return notifySaved(notifyCreated(repository.saveAndFlush(book)));//apenas um insert, o indice unico do isbn garante a regra mesmo com concorrência
+        } catch (DataIntegrityViolationException ex){
+            if ( ConstraintViolations.isViolationOf(ex, Book.ISBN_CONSTRAINT)){
+                throw new BusinessEsception("Isbn já cadastrado.");
+            }
+            throw ex;
         }
-        return repository.save(book);
     }
 
     @Override
     public Optional<Book> getById(Long id) {
-        return this.repository.findById(id);
+        return cache.getById(id, repository::findById);//só vai ao banco quando o livro não está no cache
+    }
+
+    @Override
+    public Optional<BookVersion> getVersion(Long id) {
+        Optional<Book> cached = cache.getIfPresent(id);
+        if ( cached.isPresent()){
+            return cached.map(book -> BookVersion.builder().id(book.getId()).version(book.getVersion()).updatedAt(book.getUpdatedAt()).build());
+        }
+        return repository.findVersion(id);//consulta somente no indice, o livro não entra no cache
     }
 
     @Override
@@ -42,7 +99,38 @@ public class BookServiceImpl implements BookService {
 
             throw new IllegalArgumentException("Book id cant be null");
         }
-        this.repository.delete(book);
+        try {
+            this.repository.delete(book);
+        } catch (DataIntegrityViolationException ex){
+            throw deleteFailure(ex);
+        }
+        listeners.forEach(listener -> listener.deleted(book.getId()));
+    }
+
+    @Override
+    public boolean delete(Long id, Long version) {
+        if ( id == null){
+
+            throw new IllegalArgumentException("Book id cant be null");
+        }
+        int deleted;
+        try {
+            deleted = repository.deleteIfMatches(id, version);//um unico delete, sem select antes
+        } catch (DataIntegrityViolationException ex){
+            throw deleteFailure(ex);
+        }
+        if ( deleted == 0){
+            return missingOrConflict(id, version);
+        }
+        listeners.forEach(listener -> listener.deleted(id));
+        return true;
+    }
+
+    private RuntimeException deleteFailure(DataIntegrityViolationException ex) {
+        if ( ConstraintViolations.isViolationOf(ex, Loan.BOOK_FOREIGN_KEY)){
+            return new BusinessEsception("Book has loans.");
+        }
+        return ex;
     }
 
     @Override
@@ -51,24 +139,209 @@ public class BookServiceImpl implements BookService {
 
             throw new IllegalArgumentException("Book id cant be null");
         }
-        return repository.save(book);
+        return notifySaved(repository.save(book));
+    }
+
+    @Override
+    public boolean patch(Book changes) {
+        if ( changes == null || changes.getId() == null){
+
+            throw new IllegalArgumentException("Book id cant be null");
+        }
+        int updated = repository.patchIfMatches(changes.getId(), changes.getTitle(), changes.getAuthor(),
+                changes.getVersion(), Instant.now());//um unico update, sem select nem merge
+        if ( updated == 0){
+            return missingOrConflict(changes.getId(), changes.getVersion());
+        }
+        Book patched = changes.toBuilder().build();//copia, quem chamou pode alterar o livro recebido
+        listeners.forEach(listener -> listener.patched(patched));
+        return true;
+    }
+
+    //nenhuma linha afetada: só consulta de novo quando havia versão, para separar 412 de 404
+    private boolean missingOrConflict(Long id, Long version) {
+        if ( version != null && repository.findVersion(id).isPresent()){
+            throw new ObjectOptimisticLockingFailureException(Book.class, id);
+        }
+        return false;
     }
 
     @Override
     public Page<Book> find(Book filter, Pageable pageRequest) {
-        Example<Book> example = Example.of(filter,
+
+        return find(filter, pageRequest, BookCountMode.EXACT, this::booksInOrder,
+                extra -> repository.findPage(example(filter), pageRequest, extra), Book::getId);
+    }
+
+    @Override
+    public BookPage<BookView> findViews(Book filter, Pageable pageRequest, BookCountMode countMode) {
+        //mesmo Example do find; na pagina em cache os livros vêm do BookCache, sem abrir transação
+        return find(filter, pageRequest, countMode, ids -> booksInOrder(ids).stream().map(this::view).collect(Collectors.toList()),
+                extra -> repository.findViews(example(filter), pageRequest, extra), BookView::getId);
+    }
+
+    private <T> BookPage<T> find(Book filter, Pageable pageRequest, BookCountMode countMode, Function<List<Long>, List<T>> resolver,
+                                 IntFunction<List<T>> content, Function<T, Long> idOf) {
+        Page<T> page = searchCache.get(filter, pageRequest, countMode, resolver, () -> {
+            if ( countMode == BookCountMode.NONE && pageRequest.isPaged()){
+                List<T> rows = content.apply(1);//uma linha a mais diz se existe a proxima pagina
+                List<T> pageRows = new ArrayList<>(rows.subList(0, Math.min(rows.size(), pageRequest.getPageSize())));
+                return new PageImpl<>(pageRows, pageRequest, pageRequest.getOffset() + rows.size());
+            }
+            //o count só roda quando a pagina não basta para saber o total
+            return PageableExecutionUtils.getPage(content.apply(0), pageRequest,
+                    () -> countCache.count(filter, countMode, () -> repository.count(example(filter))));
+        }, idOf);
+        return new BookPage<>(page.getContent(), pageRequest, page.getTotalElements(), countMode);
+    }
+
+    private List<Book> booksInOrder(List<Long> ids) {
+        Map<Long, Book> books = getByIds(ids);
+        return ids.stream().map(books::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private BookView view(Book book) {
+        return BookView.builder().id(book.getId()).title(book.getTitle()).author(book.getAuthor()).isbn(book.getIsbn())
+                .version(book.getVersion()).build();
+    }
+
+    @Override
+    public Slice<Book> findAfter(Book filter, BookCursor cursor, int size) {
+        List<Book> books = repository.findAfter(example(filter), cursor.getProperty(), cursor.getDirection(),
+                cursor.getKeyValue(), cursor.getId(), size + 1);//um a mais para saber se existe proxima pagina
+
+        boolean hasNext = books.size() > size;
+        List<Book> content = hasNext ? books.subList(0, size) : books;
+        return new SliceImpl<>(content, PageRequest.of(0, size, cursor.getSort()), hasNext);
+    }
+
+    private Example<Book> example(Book filter) {
+        return Example.of(filter,
                 ExampleMatcher//configurações de pesquisa
                         .matching()
                         .withIgnoreCase()
                         .withIgnoreNullValues()
                         .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
+    }
 
+    @Override
+    public Optional<Book> getBookByIsbn(String isbn) {
+        if ( !isbnFilter.mightContain(isbn)){
+            return Optional.empty();//isbn nunca cadastrado, nem consulta o banco
+        }
+        return cache.getByIsbn(isbn, () -> repository.findByIsbn(isbn));
+    }
 
-        return repository.findAll(example,pageRequest );//findAll recebe um Example metodo do repositorio
+    @Override
+    public Map<String, Book> getBooksByIsbns(Collection<String> isbns) {
+        List<String> candidates = isbns.stream().distinct().filter(isbnFilter::mightContain).collect(Collectors.toList());
+        return cache.getAllByIsbn(candidates, missing -> findInChunks(missing, repository::findByIsbnIn));
     }
 
     @Override
-    public Optional<Book> getBookByIsbn(String isbn) {
-        return repository.findByIsbn(isbn);
+    public Map<Long, Book> getByIds(Collection<Long> ids) {
+        return cache.getAllById(new LinkedHashSet<>(ids), missing -> findInChunks(missing, repository::findAllById));
+    }
+
+    //um "in" por bloco em vez de uma consulta por livro
+    private <K> List<Book> findInChunks(List<K> keys, Function<List<K>, List<Book>> query) {
+        List<Book> found = new ArrayList<>();
+        for ( int from = 0; from < keys.size(); from += LOOKUP_CHUNK_SIZE){
+            found.addAll(query.apply(keys.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, keys.size()))));
+        }
+        return found;
+    }
+
+    @Override
+    public List<BookBatchResult> saveAll(List<Book> books) {
+        BookBatchResult[] results = new BookBatchResult[books.size()];//mesma ordem da lista recebida
+
+        Map<String, Integer> candidates = new LinkedHashMap<>();//isbn -> posição, removendo duplicados em memória
+        for ( int i = 0; i < books.size(); i++){
+            if ( candidates.putIfAbsent(books.get(i).getIsbn(), i) != null){
+                results[i] = duplicated(books.get(i));
+            }
+        }
+
+        Set<String> existing = new HashSet<>();
+        List<String> isbns = candidates.keySet().stream().filter(isbnFilter::mightContain).collect(Collectors.toList());//só consulta os que podem existir
+        for ( int from = 0; from < isbns.size(); from += LOOKUP_CHUNK_SIZE){//consulta os isbns ja cadastrados em blocos
+            existing.addAll(repository.findExistingIsbns(isbns.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, isbns.size()))));
+        }
+
+        List<Integer> positions = new ArrayList<>();
+        for ( Integer position : candidates.values()){
+            if ( existing.contains(books.get(position).getIsbn())){
+                results[position] = duplicated(books.get(position));
+            } else {
+                positions.add(position);
+            }
+        }
+
+        List<Book> inserting = positions.stream().map(books::get).collect(Collectors.toList());
+        try {
+            repository.saveAll(inserting);//uma transação, inserts enviados em lote
+            positions.forEach(position -> results[position] = created(notifySaved(notifyCreated(books.get(position)))));
+        } catch (DataIntegrityViolationException ex){
+            //outro processo cadastrou algum dos isbns no meio tempo, refaz o bloco um a um
+            for ( Integer position : positions){
+                Book book = books.get(position);
+                book.setId(null);
+                book.setVersion(null);//versão atribuida na tentativa que falhou, sem ela o save volta a ser um insert
+                try {
+                    results[position] = created(save(book));
+                } catch (BusinessEsception e){
+                    results[position] = duplicated(book);
+                } catch (RuntimeException e){//outra violação ou falha do banco: só este item falha, os ja gravados seguem no resumo
+                    results[position] = BookBatchResult.builder().isbn(book.getIsbn())
+                            .status(BookBatchResult.Status.FAILED).message(e.getMessage()).build();
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    @Transactional(readOnly = true)//o stream precisa da transação aberta enquanto é consumido
+    public void export(Book filter, Consumer<Book> consumer) {
+        try (Stream<Book> books = repository.streamAll(filter.getId(),
+                containing(filter.getTitle()), containing(filter.getAuthor()), containing(filter.getIsbn()))) {
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);//tirando do contexto de persistencia para não acumular em memória
+            });
+        }
+    }
+
+    @Override
+    public Page<Book> search(String query, Pageable pageRequest) {
+        return searchIndex.search(query, pageRequest);//indice em memória, sem consulta no banco
+    }
+
+    @Override
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, limit);//prefixos em memória, ordenados por emprestimos
+    }
+
+    private Book notifyCreated(Book book) {
+        listeners.forEach(listener -> listener.created(book));
+        return book;
+    }
+
+    private Book notifySaved(Book book) {
+        listeners.forEach(listener -> listener.saved(book));
+        return book;
+    }
+
+    private String containing(String value) {//mesmo criterio do find: contendo, ignorando maiusculas e com % e _ literais
+        return value == null ? null : "%" + EscapeCharacter.DEFAULT.escape(value.toLowerCase()) + "%";
+    }
+
+    private BookBatchResult created(Book book) {
+        return BookBatchResult.builder().id(book.getId()).isbn(book.getIsbn()).status(BookBatchResult.Status.CREATED).build();
+    }
+
+    private BookBatchResult duplicated(Book book) {
+        return BookBatchResult.builder().isbn(book.getIsbn()).status(BookBatchResult.Status.DUPLICATED).message("Isbn já cadastrado.").build();
     }
 }
@@ -0,0 +1,20 @@
+package com.williamcardoso.libraryapi.service.impl;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+final class ConstraintViolations {
+
+    private ConstraintViolations() {
+    }
+
+    //verifica se a violação foi causada pela constraint informada (o nome vem do banco, por isso ignorando caixa)
+    static boolean isViolationOf(DataIntegrityViolationException ex, String constraint) {
+        Throwable cause = ex.getCause();
+        if ( cause instanceof ConstraintViolationException){
+            String name = ((ConstraintViolationException) cause).getConstraintName();
+            return name != null && name.toLowerCase().contains(constraint.toLowerCase());
+        }
+        return false;
+    }
+}
@@ -0,0 +1,75 @@
+package com.williamcardoso.libraryapi.service.impl;
+
+import com.williamcardoso.libraryapi.exception.BusinessEsception;
+import com.williamcardoso.libraryapi.model.entity.Customer;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import com.williamcardoso.libraryapi.model.repository.CustomerRepository;
+import com.williamcardoso.libraryapi.model.repository.LoanArchiveRepository;
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import com.williamcardoso.libraryapi.service.CustomerService;
+import com.williamcardoso.libraryapi.service.LoanCursor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class CustomerServiceImpl implements CustomerService {
+
+    private static final Comparator<LoanHistory> CURSOR_ORDER = Comparator.comparing(LoanHistory::getLoandate)
+            .thenComparing(LoanHistory::getId).reversed();//mesma ordem do cursor, ids unicos entre as duas tabelas
+
+    private CustomerRepository repository;
+    private LoanRepository loanRepository;
+    private LoanArchiveRepository archiveRepository;
+
+    public CustomerServiceImpl(CustomerRepository repository, LoanRepository loanRepository, LoanArchiveRepository archiveRepository) {
+        this.repository = repository;
+        this.loanRepository = loanRepository;
+        this.archiveRepository = archiveRepository;
+    }
+
+    @Override
+    public Customer getOrCreate(String name) {
+        if ( name == null || name.trim().isEmpty()){
+            throw new BusinessEsception("Customer is required.");
+        }
+        String customerName = name.trim();
+        return repository.findByName(customerName).orElseGet(() -> {
+            try {
+                return repository.saveAndFlush(Customer.builder().name(customerName).build());
+            } catch (DataIntegrityViolationException ex){
+                if ( ConstraintViolations.isViolationOf(ex, Customer.NAME_CONSTRAINT)){
+                    return repository.findByName(customerName).orElseThrow(() -> ex);//criado por outra requisição ao mesmo tempo
+                }
+                throw ex;
+            }
+        });
+    }
+
+    @Override
+    public Optional<Customer> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Slice<LoanHistory> findLoans(Long customerId, LoanCursor cursor, int size) {
+        PageRequest top = PageRequest.of(0, size + 1);//um a mais para saber se existe proxima pagina, sem count
+        //o arquivador move os devolvidos antigos para o loan_archive: as duas tabelas com o mesmo cursor, juntas pela ordem dele
+        List<LoanHistory> loans = Stream.concat(
+                loanRepository.findByCustomerBefore(customerId, cursor.getLoandate(), cursor.getId(), top).stream(),
+                archiveRepository.findByCustomerBefore(customerId, cursor.getLoandate(), cursor.getId(), top).stream())
+                .sorted(CURSOR_ORDER)
+                .limit(size + 1)
+                .collect(Collectors.toList());
+        boolean hasNext = loans.size() > size;
+        return new SliceImpl<>(hasNext ? loans.subList(0, size) : loans, PageRequest.of(0, size), hasNext);
+    }
+}
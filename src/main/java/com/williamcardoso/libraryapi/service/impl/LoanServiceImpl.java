@@ -1,24 +1,298 @@
 package com.williamcardoso.libraryapi.service.impl;
 
 import com.williamcardoso.libraryapi.exception.BusinessEsception;
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Customer;
 import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import com.williamcardoso.libraryapi.model.repository.LoanArchiveRepository;
 import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import com.williamcardoso.libraryapi.service.BookService;
+import com.williamcardoso.libraryapi.service.LoanBatchMode;
+import com.williamcardoso.libraryapi.service.LoanBatchResult;
 import com.williamcardoso.libraryapi.service.LoanService;
+import com.williamcardoso.libraryapi.service.index.AvailabilityIndex;
+import com.williamcardoso.libraryapi.service.index.CustomerLoanCounter;
+import com.williamcardoso.libraryapi.service.lock.BookLocks;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
 public class LoanServiceImpl implements LoanService {
 
+    static final int LOOKUP_CHUNK_SIZE = 1000;//limite de parametros no "in" da consulta
+    static final int MAX_HISTORY_ROWS = 10000;//cada tabela lê offset + size linhas, paginas mais fundas pedem um filtro
+    private static final Comparator<LoanHistory> HISTORY_ORDER = Comparator.comparing(LoanHistory::getLoandate)
+            .thenComparing(LoanHistory::getId).reversed();
+
     private LoanRepository repository;
+    private AvailabilityIndex availability;
+    private BookLocks locks;
+    private LoanWriter writer;
+    private LoanArchiveRepository archiveRepository;
+    private CustomerLoanCounter customerLoans;
+    private BookService bookService;
 
-    public LoanServiceImpl(LoanRepository repository) {
+    public LoanServiceImpl(LoanRepository repository, AvailabilityIndex availability, BookLocks locks, LoanWriter writer,
+                           LoanArchiveRepository archiveRepository, CustomerLoanCounter customerLoans, BookService bookService) {
         this.repository = repository;
+        this.bookService = bookService;
+        this.archiveRepository = archiveRepository;
+        this.customerLoans = customerLoans;
+        this.availability = availability;
+        this.locks = locks;
+        this.writer = writer;
     }
 
     @Override
     public Loan save(Loan loan) {
-        if( repository.existsByBookAndNotReturned( loan.getBook())){
-            throw  new BusinessEsception("Book already loaned");
+        Long bookId = loan.getBook().getId();
+        if ( availability.isLoaned(bookId)){
+            throw alreadyLoaned(bookId);//resolvido pelo bitmap, sem fila e sem ir ao banco
+        }
+        Long customerId = acquireCustomerLoan(loan);
+        try {
+            return insert(loan, bookId);
+        } catch (RuntimeException ex){
+            customerLoans.release(customerId);//emprestimo não gravado, devolve a vaga do cliente
+            throw ex;
+        }
+    }
+
+    private Loan insert(Loan loan, Long bookId) {
+        return locks.withLock(bookId, () -> {//pedidos do mesmo livro esperam aqui, não no banco
+            if ( availability.isLoaned(bookId)){
+                throw alreadyLoaned(bookId);//quem estava na frente levou o livro
+            }
+            try {
+                Loan saved = repository.saveAndFlush(loan);//apenas o insert, o indice unico do emprestimo ativo garante a regra entre instancias
+                availability.loaned(bookId);
+                return saved;
+            } catch (DataIntegrityViolationException ex){
+                if ( ConstraintViolations.isViolationOf(ex, Loan.ACTIVE_LOAN_CONSTRAINT)){
+                    availability.loaned(bookId);//o bitmap não sabia do emprestimo, corrige para as proximas tentativas
+                    throw  new BusinessEsception("Book already loaned");
+                }
+                throw ex;
+            }
+        });
+    }
+
+    @Override
+    public Optional<Loan> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Loan update(Loan loan) {
+        Long bookId = loan.getBook().getId();
+        Long customerId = loan.getCustomer().getId();
+        return locks.withLock(bookId, () -> {//mesma fila dos emprestimos do livro
+            //relido dentro do lock: duas devoluções concorrentes do mesmo emprestimo liberam a vaga do cliente uma vez só
+            boolean wasActive = repository.findReturnedById(loan.getId()).map(returned -> !returned).orElse(false);
+            boolean active = !Boolean.TRUE.equals(loan.getReturned());
+            if ( active == wasActive){
+                return loan;//mesmo estado: nada a gravar, o bitmap e o contador descrevem outro emprestimo do livro
+            }
+            if ( active && !customerLoans.tryAcquire(customerId)){//desfazer a devolução respeita o limite do cliente
+                throw customerLimitReached();
+            }
+            Loan saved;
+            try {
+                saved = repository.saveAndFlush(loan);//devolução libera o indice unico do emprestimo ativo
+            } catch (DataIntegrityViolationException ex){
+                if ( active){
+                    customerLoans.release(customerId);
+                }
+                if ( ConstraintViolations.isViolationOf(ex, Loan.ACTIVE_LOAN_CONSTRAINT)){
+                    throw  new BusinessEsception("Book already loaned");//desfazer a devolução de um livro que ja foi emprestado de novo
+                }
+                throw ex;
+            }
+            if ( active){
+                availability.loaned(bookId);
+            } else {
+                availability.returned(bookId);
+                customerLoans.release(customerId);
+            }
+            return saved;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Loan> saveAsync(Loan loan) {
+        if ( !writer.isEnabled()){
+            try {
+                return CompletableFuture.completedFuture(save(loan));//group commit desligado, grava na hora
+            } catch (BusinessEsception ex){
+                return CompletableFuture.failedFuture(ex);
+            }
+        }
+        Long bookId = loan.getBook().getId();
+        if ( availability.isLoaned(bookId)){
+            return CompletableFuture.failedFuture(alreadyLoaned(bookId));
+        }
+        Long customerId;
+        try {
+            customerId = acquireCustomerLoan(loan);
+        } catch (BusinessEsception ex){
+            return CompletableFuture.failedFuture(ex);
+        }
+        CompletableFuture<Loan> result;
+        try {
+            result = writer.submit(loan);
+        } catch (RuntimeException ex){
+            customerLoans.release(customerId);
+            throw ex;
+        }
+        return result.whenComplete((saved, ex) -> {
+            if ( ex != null){
+                customerLoans.release(customerId);
+            }
+        });
+    }
+
+    //emprestimo de varios livros: um "in" para os isbns, uma verificação de disponibilidade e um saveAll com inserts em lote
+    @Override
+    public List<LoanBatchResult> saveAll(Customer customer, List<String> isbns, LoanBatchMode mode) {
+        LoanBatchResult[] results = new LoanBatchResult[isbns.size()];//mesma ordem da lista recebida
+
+        Map<String, Integer> candidates = new LinkedHashMap<>();//isbn -> posição, removendo duplicados em memória
+        for ( int i = 0; i < isbns.size(); i++){
+            if ( candidates.putIfAbsent(isbns.get(i), i) != null){
+                results[i] = rejected(isbns.get(i), LoanBatchResult.Status.DUPLICATED, "Isbn repeated in the request");
+            }
+        }
+
+        Map<String, Book> books = bookService.getBooksByIsbns(candidates.keySet());
+        Set<Long> loaned = loanedAmong(books.values().stream().map(Book::getId).collect(Collectors.toList()));
+
+        Map<Integer, Loan> loans = new LinkedHashMap<>();//posição -> emprestimo a gravar
+        candidates.forEach((isbn, position) -> {
+            Book book = books.get(isbn);
+            if ( book == null){
+                results[position] = rejected(isbn, LoanBatchResult.Status.NOT_FOUND, "Book not found for passed isbn");
+            } else if ( loaned.contains(book.getId())){
+                locks.rejected(book.getId());
+                results[position] = rejected(isbn, LoanBatchResult.Status.LOANED, "Book already loaned");
+            } else if ( !customerLoans.tryAcquire(customer.getId())){
+                results[position] = rejected(isbn, LoanBatchResult.Status.LIMIT_REACHED,
+                        "Customer has reached the limit of " + customerLoans.getLimit() + " active loans");
+            } else {
+                loans.put(position, Loan.builder().book(book).customer(customer).loandate(LocalDate.now()).build());
+            }
+        });
+
+        if ( mode == LoanBatchMode.ALL_OR_NOTHING && loans.size() < isbns.size()){
+            return abort(results, loans, customer);
+        }
+        try {
+            repository.saveAll(loans.values());//uma transação, inserts enviados em lote
+            loans.forEach((position, loan) -> {
+                availability.loaned(loan.getBook().getId());
+                results[position] = LoanBatchResult.builder().id(loan.getId()).isbn(loan.getBook().getIsbn())
+                        .status(LoanBatchResult.Status.CREATED).build();
+            });
+        } catch (DataIntegrityViolationException ex){
+            //algum livro foi emprestado no meio tempo (outra requisição ou instancia), nada foi gravado
+            if ( mode == LoanBatchMode.ALL_OR_NOTHING){
+                Set<Long> nowLoaned = new HashSet<>(repository.findLoanedBookIds(
+                        loans.values().stream().map(loan -> loan.getBook().getId()).collect(Collectors.toList())));
+                loans.forEach((position, loan) -> {
+                    if ( nowLoaned.contains(loan.getBook().getId())){
+                        availability.loaned(loan.getBook().getId());
+                        results[position] = rejected(loan.getBook().getIsbn(), LoanBatchResult.Status.LOANED, "Book already loaned");
+                    }
+                });
+                return abort(results, loans, customer);
+            }
+            loans.forEach((position, loan) -> {//melhor esforço: refaz um a um pelo caminho normal
+                loan.setId(null);
+                try {
+                    Loan saved = insert(loan, loan.getBook().getId());
+                    results[position] = LoanBatchResult.builder().id(saved.getId()).isbn(loan.getBook().getIsbn())
+                            .status(LoanBatchResult.Status.CREATED).build();
+                } catch (BusinessEsception e){
+                    customerLoans.release(customer.getId());
+                    results[position] = rejected(loan.getBook().getIsbn(), LoanBatchResult.Status.LOANED, e.getMessage());
+                } catch (RuntimeException e){//fila do livro cheia ou outra falha do banco: só este item falha, os demais seguem
+                    customerLoans.release(customer.getId());
+                    results[position] = rejected(loan.getBook().getIsbn(), LoanBatchResult.Status.FAILED, e.getMessage());
+                }
+            });
+        }
+        return Arrays.asList(results);
+    }
+
+    private List<LoanBatchResult> abort(LoanBatchResult[] results, Map<Integer, Loan> loans, Customer customer) {
+        loans.forEach((position, loan) -> {
+            customerLoans.release(customer.getId());
+            if ( results[position] == null){
+                results[position] = rejected(loan.getBook().getIsbn(), LoanBatchResult.Status.ABORTED, "Batch aborted, no loan was created");
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    private LoanBatchResult rejected(String isbn, LoanBatchResult.Status status, String message) {
+        return LoanBatchResult.builder().isbn(isbn).status(status).message(message).build();
+    }
+
+    private Long acquireCustomerLoan(Loan loan) {//limite de emprestimos ativos conferido no contador em memória
+        Long customerId = loan.getCustomer().getId();
+        if ( !customerLoans.tryAcquire(customerId)){
+            throw customerLimitReached();
+        }
+        return customerId;
+    }
+
+    private BusinessEsception customerLimitReached() {
+        return new BusinessEsception("Customer has reached the limit of " + customerLoans.getLimit() + " active loans");
+    }
+
+    private BusinessEsception alreadyLoaned(Long bookId) {
+        locks.rejected(bookId);
+        return new BusinessEsception("Book already loaned");
+    }
+
+    @Override
+    public Set<Long> loanedAmong(Collection<Long> bookIds) {
+        if ( availability.isLoaded()){
+            return availability.loanedAmong(bookIds);
+        }
+        Set<Long> loaned = new HashSet<>();//bitmap ainda carregando, consulta o banco em blocos
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(bookIds));
+        for ( int from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE){
+            loaned.addAll(repository.findLoanedBookIds(ids.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, ids.size()))));
+        }
+        return loaned;
+    }
+
+    //historico nas duas tabelas: cada uma devolve até o fim da pagina pedida, a pagina sai da junção ordenada
+    @Override
+    public Page<LoanHistory> history(String isbn, String customer, Pageable pageable) {
+        if ( pageable.getOffset() + pageable.getPageSize() > MAX_HISTORY_ROWS){//comparado em long, sem estourar o int
+            throw new BusinessEsception("Loan history is limited to the first " + MAX_HISTORY_ROWS + " loans, filter by isbn or customer.");
         }
+        Pageable top = PageRequest.of(0, (int) pageable.getOffset() + pageable.getPageSize());
+        Page<LoanHistory> live = repository.findHistory(isbn, customer, top);
+        Page<LoanHistory> archived = archiveRepository.findHistory(isbn, customer, top);
 
-        return repository.save(loan);
+        List<LoanHistory> content = Stream.concat(live.stream(), archived.stream())
+                .sorted(HISTORY_ORDER)
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, live.getTotalElements() + archived.getTotalElements());
     }
 }
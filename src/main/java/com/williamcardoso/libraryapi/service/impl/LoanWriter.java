@@ -0,0 +1,217 @@
+package com.williamcardoso.libraryapi.service.impl;
+
+import com.williamcardoso.libraryapi.exception.BusinessEsception;
+import com.williamcardoso.libraryapi.exception.ServiceBusyException;
+import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import com.williamcardoso.libraryapi.service.index.AvailabilityIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+// group commit dos emprestimos: fila limitada em memória, uma thread grava em lotes de N ou a cada T ms numa unica transação
+@Slf4j
+@Component
+public class LoanWriter {
+
+    private final LoanRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final AvailabilityIndex availability;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final Duration shutdownTimeout;
+
+    private final BlockingQueue<PendingLoan> queue;
+    private final Set<Long> pendingBooks = ConcurrentHashMap.newKeySet();//livros na fila, um segundo pedido é recusado em memória
+    private final ReadWriteLock accepting = new ReentrantReadWriteLock();//submit no lock de leitura, o stop no de escrita
+    private volatile boolean running;
+    private Thread thread;
+
+    public LoanWriter(LoanRepository repository, PlatformTransactionManager transactionManager, AvailabilityIndex availability,
+                      @Value("${library.loans.group-commit.enabled:false}") boolean enabled,
+                      @Value("${library.loans.group-commit.batch-size:100}") int batchSize,
+                      @Value("${library.loans.group-commit.max-delay:PT0.005S}") Duration maxDelay,
+                      @Value("${library.loans.group-commit.queue-capacity:10000}") int queueCapacity,
+                      @Value("${library.loans.group-commit.shutdown-timeout:PT30S}") Duration shutdownTimeout) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.availability = availability;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @PostConstruct
+    public void init() {
+        if ( enabled){
+            start();
+        }
+    }
+
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this::run, "loan-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //o future só completa depois do commit do lote: quem recebeu a resposta tem o emprestimo gravado
+    public CompletableFuture<Loan> submit(Loan loan) {
+        Long bookId = loan.getBook().getId();
+        if ( !pendingBooks.add(bookId)){
+            CompletableFuture<Loan> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new BusinessEsception("Book already loaned"));
+            return rejected;
+        }
+        PendingLoan pending = new PendingLoan(loan, bookId);
+        boolean queued;
+        accepting.readLock().lock();//o stop não passa entre conferir o running e o offer
+        try {
+            queued = running && queue.offer(pending);
+        } finally {
+            accepting.readLock().unlock();
+        }
+        if ( !queued){//fila cheia ou desligando: o cliente tenta de novo depois
+            pendingBooks.remove(bookId);
+            throw new ServiceBusyException("Too many pending loans, try again later");
+        }
+        return pending.future;
+    }
+
+    //desligamento: para de aceitar pedidos e grava tudo o que ja estava na fila antes de fechar o banco
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        Thread writer;
+        synchronized (this) {
+            accepting.writeLock().lock();//espera os submits em andamento, depois disso nada mais entra na fila
+            try {
+                running = false;
+            } finally {
+                accepting.writeLock().unlock();
+            }
+            writer = thread;
+        }
+        if ( writer != null){
+            writer.join(shutdownTimeout.toMillis());
+        }
+        List<PendingLoan> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);//não gravados no prazo: falham em vez de deixar o pedido esperando até o timeout
+        if ( !abandoned.isEmpty()){
+            log.warn("Loan writer stopped with {} pending loans.", abandoned.size());
+            abandoned.forEach(this::abandon);
+        }
+    }
+
+    private void run() {
+        List<PendingLoan> batch = new ArrayList<>(batchSize);
+        while ( running || !queue.isEmpty()){
+            try {
+                PendingLoan first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if ( first == null){
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while ( batch.size() < batchSize){
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if ( batch.size() == batchSize || remaining <= 0){
+                        break;
+                    }
+                    PendingLoan next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if ( next == null){
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e){
+                batch.forEach(this::abandon);//ja retirados da fila, ninguém mais completaria esses pedidos
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex){
+                log.error("Loan writer failed to write a batch.", ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void abandon(PendingLoan pending) {
+        pendingBooks.remove(pending.bookId);
+        pending.future.completeExceptionally(new ServiceBusyException("Loan writer stopped, try again later"));
+    }
+
+    private void write(List<PendingLoan> batch) {
+        try {
+            transactionTemplate.execute(status -> {
+                repository.saveAll(batch.stream().map(pending -> pending.loan).collect(Collectors.toList()));
+                repository.flush();
+                batch.forEach(pending -> availability.loaned(pending.bookId));//aplicado no commit
+                return null;
+            });
+            batch.forEach(pending -> pending.future.complete(pending.loan));
+        } catch (DataIntegrityViolationException ex){
+            batch.forEach(this::writeOne);//algum livro ja estava emprestado (outra instancia ou o caminho sincrono), refaz um a um
+        } catch (RuntimeException ex){
+            batch.forEach(pending -> pending.future.completeExceptionally(ex));
+        } finally {
+            batch.forEach(pending -> pendingBooks.remove(pending.bookId));
+        }
+    }
+
+    private void writeOne(PendingLoan pending) {
+        pending.loan.setId(null);
+        try {
+            Loan saved = transactionTemplate.execute(status -> repository.saveAndFlush(pending.loan));
+            availability.loaned(pending.bookId);
+            pending.future.complete(saved);
+        } catch (DataIntegrityViolationException ex){
+            if ( ConstraintViolations.isViolationOf(ex, Loan.ACTIVE_LOAN_CONSTRAINT)){
+                availability.loaned(pending.bookId);
+                pending.future.completeExceptionally(new BusinessEsception("Book already loaned"));
+            } else {
+                pending.future.completeExceptionally(ex);
+            }
+        } catch (RuntimeException ex){
+            pending.future.completeExceptionally(ex);
+        }
+    }
+
+    static final class PendingLoan {
+
+        private final Loan loan;
+        private final Long bookId;
+        private final CompletableFuture<Loan> future = new CompletableFuture<>();
+
+        PendingLoan(Loan loan, Long bookId) {
+            this.loan = loan;
+            this.bookId = bookId;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// bitmap comprimido (roaring) com os ids dos livros emprestados, atualizado no commit de cada emprestimo/devolução
+@Slf4j
+@Component
+public class AvailabilityIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Roaring64NavigableMap loaned = new Roaring64NavigableMap();
+    private boolean loaded;//antes da primeira carga ninguém é considerado emprestado, o banco continua garantindo a regra
+    private Map<Long, Boolean> journal;//alterações feitas durante a reconstrução, reaplicadas antes da troca
+    private final AtomicLong mismatches = new AtomicLong();
+
+    private final LoanRepository repository;
+    private final TransactionTemplate transactionTemplate;
+
+    public AvailabilityIndex(LoanRepository repository, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isLoaned(Long bookId) {
+        lock.readLock().lock();
+        try {
+            return loaned.contains(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //ids emprestados dentre os informados, uma unica passagem com o lock de leitura
+    public Set<Long> loanedAmong(Collection<Long> bookIds) {
+        Set<Long> result = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for ( Long id : bookIds){
+                if ( loaned.contains(id)){
+                    result.add(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public void loaned(Long bookId) {
+        afterCommit(() -> set(bookId, true));
+    }
+
+    public void returned(Long bookId) {
+        afterCommit(() -> set(bookId, false));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    //confere o bitmap com a tabela de emprestimos e corrige as diferenças (alterações feitas fora do service)
+    @Scheduled(initialDelayString = "${library.loans.availability.check-interval:PT10M}",
+            fixedDelayString = "${library.loans.availability.check-interval:PT10M}")
+    public void check() {
+        long drift = rebuild();
+        if ( drift > 0){
+            log.warn("Availability index differed from the loan table in {} books, rebuilt.", drift);
+        }
+    }
+
+    public synchronized long rebuild() {
+        lock.writeLock().lock();
+        try {
+            journal = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            Roaring64NavigableMap built = new Roaring64NavigableMap();
+            transactionTemplate.execute(status -> {
+                try (Stream<Long> ids = repository.streamLoanedBookIds()) {
+                    ids.forEach(built::addLong);
+                }
+                return null;
+            });
+            built.runOptimize();
+
+            lock.writeLock().lock();
+            try {
+                journal.forEach((id, isLoaned) -> apply(built, id, isLoaned));//estado final de cada livro alterado durante a leitura
+                long drift = 0;
+                if ( loaded){
+                    Roaring64NavigableMap diff = new Roaring64NavigableMap();
+                    diff.or(loaned);
+                    diff.xor(built);
+                    drift = diff.getLongCardinality();
+                }
+                loaned = built;
+                loaded = true;
+                mismatches.addAndGet(drift);
+                return drift;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                journal = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public AvailabilityStats stats() {
+        lock.readLock().lock();
+        try {
+            return AvailabilityStats.builder()
+                    .loaded(loaded)
+                    .loanedBooks(loaned.getLongCardinality())
+                    .memoryBytes(loaned.getLongSizeInBytes())
+                    .mismatches(mismatches.get())
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void set(Long bookId, boolean isLoaned) {
+        lock.writeLock().lock();
+        try {
+            apply(loaned, bookId, isLoaned);
+            if ( journal != null){
+                journal.put(bookId, isLoaned);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Roaring64NavigableMap bitmap, Long bookId, boolean isLoaned) {
+        if ( isLoaned){
+            bitmap.addLong(bookId);
+        } else {
+            bitmap.removeLong(bookId);
+        }
+    }
+
+    private void afterCommit(Runnable action) {//dentro de uma transação só vale depois do commit, rollback não altera o bitmap
+        if ( TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityStats {
+
+    private boolean loaded;
+    private long loanedBooks;
+    private long memoryBytes;
+    private long mismatches;//diferenças com o banco encontradas nas verificações
+}
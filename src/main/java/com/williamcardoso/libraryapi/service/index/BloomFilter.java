@@ -0,0 +1,94 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// filtro de bloom sem lock: nunca dá falso negativo, falso positivo na taxa para qual foi dimensionado
+final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    private BloomFilter(long bitCount, int hashFunctions) {
+        this.bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        this.bitCount = bitCount;
+        this.hashFunctions = hashFunctions;
+    }
+
+    static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));//tamanho otimo em bits
+        int k = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));//quantidade otima de funções de hash
+        return new BloomFilter(Math.max(64, m), k);
+    }
+
+    void put(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;//double hashing: k posições a partir de dois hashes
+        for ( int i = 0; i < hashFunctions; i++){
+            set(Long.remainderUnsigned(h1 + i * h2, bitCount));
+        }
+    }
+
+    boolean mightContain(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for ( int i = 0; i < hashFunctions; i++){
+            if ( !get(Long.remainderUnsigned(h1 + i * h2, bitCount))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long bitCount() {
+        return bitCount;
+    }
+
+    int hashFunctions() {
+        return hashFunctions;
+    }
+
+    long memoryBytes() {
+        return bits.length() * 8L;
+    }
+
+    //taxa de falso positivo esperada com a quantidade de itens ja inseridos
+    double expectedFalsePositiveRate(long insertions) {
+        return Math.pow(1 - Math.exp(-(double) hashFunctions * insertions / bitCount), hashFunctions);
+    }
+
+    private void set(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long old;
+        do {
+            old = bits.get(word);
+            if ( (old & mask) != 0){
+                return;
+            }
+        } while ( !bits.compareAndSet(word, old, old | mask));
+    }
+
+    private boolean get(long index) {
+        return (bits.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    private static long hash(String value) {//FNV-1a de 64 bits com mistura final
+        long hash = 0xcbf29ce484222325L;
+        for ( int i = 0; i < value.length(); i++){
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,189 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.repository.BookRepository;
+import com.williamcardoso.libraryapi.service.BookChangeListener;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// indice invertido em memória sobre titulo e autor, atualizado a cada save/update/delete do BookService
+@Component
+public class BookSearchIndex implements BookChangeListener {
+
+    private static final int TITLE = 1;
+    private static final int AUTHOR = 2;
+    private static final int MIN_PREFIX_LENGTH = 3;//termos menores só casam com a palavra inteira
+    private static final int MAX_PREFIX_EXPANSIONS = 100;
+    private static final double PREFIX_WEIGHT = 0.5;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();//termo -> (id do livro -> campos onde aparece)
+    private final Map<Long, Book> documents = new HashMap<>();//copia dos livros indexados, a busca não vai ao banco
+
+    private final BookRepository repository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public BookSearchIndex(BookRepository repository, EntityManager entityManager, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {//carga inicial lendo a tabela por stream
+        transactionTemplate.execute(status -> {
+            try (Stream<Book> books = repository.streamAll(null, null, null, null)) {
+                books.forEach(book -> {
+                    add(book, false);//não sobrescreve o que ja foi atualizado durante a carga
+                    entityManager.detach(book);
+                });
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void saved(Book book) {
+        add(book, true);
+    }
+
+    @Override
+    public void patched(Book changes) {
+        lock.writeLock().lock();//reentrante, o add abaixo pega o mesmo lock
+        try {
+            Book current = documents.get(changes.getId());
+            if ( current != null){
+                add(current.toBuilder()
+                        .title(changes.getTitle() != null ? changes.getTitle() : current.getTitle())
+                        .author(changes.getAuthor() != null ? changes.getAuthor() : current.getAuthor())
+                        .build(), true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleted(Long id) {
+        lock.writeLock().lock();
+        try {
+            remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //busca ordenada por relevancia: soma por termo da consulta de idf * peso do campo (titulo vale mais que autor)
+    public Page<Book> search(String query, Pageable pageable) {
+        List<String> terms = TextNormalizer.tokens(query);
+        if ( terms.isEmpty()){
+            return Page.empty(pageable);
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        List<Book> ranked;
+        lock.readLock().lock();
+        try {
+            for ( String term : new LinkedHashSet<>(terms)){
+                Map<Long, Double> termScores = new HashMap<>();//melhor pontuação do termo em cada livro
+                for ( Map.Entry<String, Map<Long, Integer>> entry : matching(term).entrySet()){
+                    double weight = entry.getKey().equals(term) ? 1.0 : PREFIX_WEIGHT;
+                    double idf = Math.log(1 + (double) documents.size() / entry.getValue().size());
+                    entry.getValue().forEach((id, fields) -> termScores.merge(id, weight * idf * boost(fields), Math::max));
+                }
+                termScores.forEach((id, score) -> scores.merge(id, score, Double::sum));
+            }
+
+            ranked = scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .skip(pageable.getOffset())
+                    .limit(pageable.getPageSize())
+                    .map(entry -> documents.get(entry.getKey()).toBuilder().build())
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new PageImpl<>(ranked, pageable, scores.size());
+    }
+
+    private Map<String, Map<Long, Integer>> matching(String term) {
+        if ( term.length() < MIN_PREFIX_LENGTH){
+            Map<Long, Integer> exact = postings.get(term);
+            return exact == null ? Collections.emptyMap() : Collections.singletonMap(term, exact);
+        }
+        Map<String, Map<Long, Integer>> expansions = new HashMap<>();//termo exato e palavras que começam com ele
+        for ( Map.Entry<String, Map<Long, Integer>> entry : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()){
+            if ( expansions.size() == MAX_PREFIX_EXPANSIONS){
+                break;
+            }
+            expansions.put(entry.getKey(), entry.getValue());
+        }
+        return expansions;
+    }
+
+    private double boost(int fields) {
+        return ((fields & TITLE) != 0 ? 2.0 : 0) + ((fields & AUTHOR) != 0 ? 1.0 : 0);
+    }
+
+    private void add(Book book, boolean replace) {
+        Book document = book.toBuilder().build();//copia, o livro recebido pode ser alterado por quem chamou
+        lock.writeLock().lock();
+        try {
+            if ( !replace && documents.containsKey(document.getId())){
+                return;
+            }
+            remove(document.getId());
+            documents.put(document.getId(), document);
+            TextNormalizer.tokens(document.getTitle()).forEach(token -> post(token, document.getId(), TITLE));
+            TextNormalizer.tokens(document.getAuthor()).forEach(token -> post(token, document.getId(), AUTHOR));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void post(String token, Long id, int field) {
+        postings.computeIfAbsent(token, key -> new HashMap<>()).merge(id, field, (a, b) -> a | b);
+    }
+
+    private void remove(Long id) {//chamado com o lock de escrita
+        Book old = documents.remove(id);
+        if ( old == null){
+            return;
+        }
+        Stream.concat(TextNormalizer.tokens(old.getTitle()).stream(), TextNormalizer.tokens(old.getAuthor()).stream())
+                .distinct()
+                .forEach(token -> {
+                    Map<Long, Integer> ids = postings.get(token);
+                    if ( ids != null){
+                        ids.remove(id);
+                        if ( ids.isEmpty()){
+                            postings.remove(token);
+                        }
+                    }
+                });
+    }
+}
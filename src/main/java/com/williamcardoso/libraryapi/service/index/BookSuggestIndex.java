@@ -0,0 +1,262 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.repository.BookRepository;
+import com.williamcardoso.libraryapi.model.repository.LoanArchiveRepository;
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import com.williamcardoso.libraryapi.service.BookChangeListener;
+import com.williamcardoso.libraryapi.service.BookSuggestion;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// sugestões da caixa de busca: livros em ordem de emprestimos (recarregados do banco de tempos em tempos) e
+// palavras de titulo e autor em ordem alfabetica, onde cada prefixo digitado é uma faixa do mapa
+@Component
+public class BookSuggestIndex implements BookChangeListener {
+
+    private static final int MIN_PREFIX_LENGTH = 2;//uma letra casaria com boa parte do acervo
+    private static final int RANKED_SCAN_LIMIT = 2000;//livros percorridos na ordem de emprestimos antes de usar a faixa do prefixo
+    private static final Comparator<Entry> RANKING = Comparator.<Entry>comparingLong(entry -> entry.loans).reversed()
+            .thenComparing(entry -> entry.sortKey)
+            .thenComparingLong(entry -> entry.id);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Set<Long>> words = new TreeMap<>();//palavra -> livros onde aparece
+    private final Map<Long, Entry> documents = new HashMap<>();
+    private NavigableSet<Entry> ranked = new TreeSet<>(RANKING);//mais emprestados primeiro
+    private Map<Long, Long> loans = Collections.emptyMap();//emprestimos por livro, trocado inteiro a cada recarga
+
+    private final BookRepository repository;
+    private final LoanRepository loanRepository;
+    private final LoanArchiveRepository archiveRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public BookSuggestIndex(BookRepository repository, LoanRepository loanRepository, LoanArchiveRepository archiveRepository,
+                            EntityManager entityManager, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.loanRepository = loanRepository;
+        this.archiveRepository = archiveRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        transactionTemplate.execute(status -> {
+            try (Stream<Book> books = repository.streamAll(null, null, null, null)) {
+                books.forEach(book -> {
+                    add(book, false);//não sobrescreve o que ja foi atualizado durante a carga
+                    entityManager.detach(book);
+                });
+            }
+            return null;
+        });
+        refresh();
+    }
+
+    //popularidade: emprestimos ativos, devolvidos e arquivados de cada livro
+    @Scheduled(initialDelayString = "${library.books.suggest.refresh-interval:PT5M}",
+            fixedDelayString = "${library.books.suggest.refresh-interval:PT5M}")
+    public void refresh() {
+        Map<Long, Long> counts = transactionTemplate.execute(status -> {
+            Map<Long, Long> result = new HashMap<>();
+            Stream.concat(loanRepository.countByBook().stream(), archiveRepository.countByBook().stream())
+                    .forEach(count -> result.merge(count.getBookId(), count.getLoans(), Long::sum));
+            return result;
+        });
+        setLoans(counts);
+    }
+
+    void setLoans(Map<Long, Long> counts) {
+        lock.writeLock().lock();
+        try {
+            loans = counts;
+            NavigableSet<Entry> reranked = new TreeSet<>(RANKING);
+            for ( Entry entry : documents.values()){
+                entry.loans = counts.getOrDefault(entry.id, 0l);//o conjunto antigo é descartado, ninguém lê com o lock de escrita
+                reranked.add(entry);
+            }
+            ranked = reranked;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void saved(Book book) {
+        add(book, true);
+    }
+
+    @Override
+    public void patched(Book changes) {
+        lock.writeLock().lock();//reentrante, o add abaixo pega o mesmo lock
+        try {
+            Entry current = documents.get(changes.getId());
+            if ( current != null){
+                add(Book.builder().id(current.id).isbn(current.isbn)
+                        .title(changes.getTitle() != null ? changes.getTitle() : current.title)
+                        .author(changes.getAuthor() != null ? changes.getAuthor() : current.author)
+                        .build(), true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleted(Long id) {
+        lock.writeLock().lock();
+        try {
+            remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //cada palavra digitada precisa ser começo de alguma palavra do titulo ou do autor: "senhor an" acha "O Senhor dos Anéis"
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        List<String> terms = TextNormalizer.tokens(prefix);
+        if ( terms.isEmpty() || String.join("", terms).length() < MIN_PREFIX_LENGTH){
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            //prefixo comum: os primeiros livros na ordem de emprestimos ja bastam
+            List<Entry> found = new ArrayList<>(limit);
+            Iterator<Entry> entries = ranked.iterator();
+            for ( int scanned = 0; entries.hasNext() && found.size() < limit && scanned < RANKED_SCAN_LIMIT; scanned++){
+                Entry entry = entries.next();
+                if ( entry.matches(terms)){
+                    found.add(entry);
+                }
+            }
+            if ( found.size() < limit && entries.hasNext()){
+                found = byPrefix(terms, limit);//prefixo raro: poucos livros na faixa da palavra
+            }
+            return found.stream()
+                    .map(entry -> BookSuggestion.builder().id(entry.id).title(entry.title).author(entry.author)
+                            .isbn(entry.isbn).loans(entry.loans).build())
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Entry> byPrefix(List<String> terms, int limit) {//chamado com o lock de leitura
+        String longest = terms.stream().max(Comparator.comparingInt(String::length)).get();//faixa menor, menos candidatos
+        PriorityQueue<Entry> top = new PriorityQueue<>(limit + 1, RANKING.reversed());//o pior dos melhores no topo
+        Set<Long> seen = new HashSet<>();
+        for ( Set<Long> ids : words.subMap(longest, true, longest + Character.MAX_VALUE, false).values()){
+            for ( Long id : ids){
+                Entry entry = documents.get(id);
+                if ( seen.add(id) && entry.matches(terms)){
+                    top.add(entry);
+                    if ( top.size() > limit){
+                        top.poll();
+                    }
+                }
+            }
+        }
+        List<Entry> result = new ArrayList<>(top);
+        result.sort(RANKING);
+        return result;
+    }
+
+    private void add(Book book, boolean replace) {
+        Entry entry = new Entry(book);
+        lock.writeLock().lock();
+        try {
+            if ( !replace && documents.containsKey(entry.id)){
+                return;
+            }
+            remove(entry.id);
+            entry.loans = loans.getOrDefault(entry.id, 0l);
+            documents.put(entry.id, entry);
+            ranked.add(entry);
+            for ( String word : entry.words){
+                words.computeIfAbsent(word, key -> new HashSet<>(2)).add(entry.id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(Long id) {//chamado com o lock de escrita
+        Entry old = documents.remove(id);
+        if ( old == null){
+            return;
+        }
+        ranked.remove(old);
+        for ( String word : old.words){
+            Set<Long> ids = words.get(word);
+            if ( ids != null){
+                ids.remove(id);
+                if ( ids.isEmpty()){
+                    words.remove(word);
+                }
+            }
+        }
+    }
+
+    //somente o que a sugestão devolve, a entidade não fica guardada
+    private static final class Entry {
+
+        final Long id;
+        final String title;
+        final String author;
+        final String isbn;
+        final String sortKey;
+        final String[] words;
+        long loans;//alterado só com o lock de escrita, fora do conjunto ordenado
+
+        Entry(Book book) {
+            this.id = book.getId();
+            this.title = book.getTitle();
+            this.author = book.getAuthor();
+            this.isbn = book.getIsbn();
+            this.sortKey = TextNormalizer.normalize(book.getTitle());
+            this.words = Stream.concat(TextNormalizer.tokens(book.getTitle()).stream(), TextNormalizer.tokens(book.getAuthor()).stream())
+                    .distinct()
+                    .toArray(String[]::new);
+        }
+
+        boolean matches(List<String> terms) {
+            for ( String term : terms){
+                boolean found = false;
+                for ( String word : words){
+                    if ( word.startsWith(term)){
+                        found = true;
+                        break;
+                    }
+                }
+                if ( !found){
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.williamcardoso.libraryapi.model.projection.CustomerLoanCount;
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// emprestimos ativos por cliente em memória: o limite é conferido sem count; cada cliente é contado no banco no primeiro acesso
+// e de novo quando a entrada expira, limitada por tamanho e conferida periodicamente (devoluções em outra instancia, vagas perdidas)
+@Slf4j
+@Component
+public class CustomerLoanCounter {
+
+    static final int CHECK_CHUNK_SIZE = 1000;//limite de parametros no "in" da conferencia
+
+    private final Cache<Long, AtomicInteger> active;
+
+    private final LoanRepository repository;
+    private final int limit;
+
+    public CustomerLoanCounter(LoanRepository repository, @Value("${library.loans.max-active-per-customer:5}") int limit,
+                               @Value("${library.loans.customer-counts.maximum-size:10000}") long maximumSize,
+                               @Value("${library.loans.customer-counts.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.repository = repository;
+        this.limit = limit;
+        this.active = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    //reserva uma vaga antes do insert; quem chamou devolve com release se o emprestimo não for gravado
+    public boolean tryAcquire(Long customerId) {
+        AtomicInteger count = counter(customerId);
+        int current;
+        do {
+            current = count.get();
+            if ( current >= limit){
+                return false;
+            }
+        } while ( !count.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    public void release(Long customerId) {
+        AtomicInteger count = active.getIfPresent(customerId);
+        if ( count != null){//sem contador o proximo acesso conta no banco, ja com a devolução
+            count.updateAndGet(value -> Math.max(0, value - 1));
+        }
+    }
+
+    public int active(Long customerId) {
+        return counter(customerId).get();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    //recontagem dos clientes em memória num group by por bloco; um emprestimo gravado durante a conferencia fica para a proxima
+    @Scheduled(initialDelayString = "${library.loans.customer-counts.check-interval:PT10M}",
+            fixedDelayString = "${library.loans.customer-counts.check-interval:PT10M}")
+    public long check() {
+        List<Long> ids = new ArrayList<>(active.asMap().keySet());
+        long drift = 0;
+        for ( int from = 0; from < ids.size(); from += CHECK_CHUNK_SIZE){
+            List<Long> chunk = ids.subList(from, Math.min(from + CHECK_CHUNK_SIZE, ids.size()));
+            Map<Long, Long> counts = new HashMap<>();
+            repository.countActiveByCustomers(chunk).forEach(count -> counts.put(count.getCustomerId(), count.getLoans()));
+            for ( Long id : chunk){
+                AtomicInteger count = active.getIfPresent(id);
+                int actual = counts.getOrDefault(id, 0l).intValue();//clientes sem emprestimo ativo não voltam do group by
+                if ( count != null && count.getAndSet(actual) != actual){
+                    drift++;
+                }
+            }
+        }
+        if ( drift > 0){
+            log.warn("Customer loan counter differed from the loan table in {} customers, corrected.", drift);
+        }
+        return drift;
+    }
+
+    private AtomicInteger counter(Long customerId) {
+        AtomicInteger count = active.getIfPresent(customerId);
+        if ( count != null){
+            return count;
+        }
+        int loans = (int) repository.countActiveByCustomer(customerId);//fora do compute, não segura a carga dos outros clientes
+        return active.asMap().computeIfAbsent(customerId, id -> new AtomicInteger(loans));
+    }
+}
@@ -0,0 +1,116 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.repository.BookRepository;
+import com.williamcardoso.libraryapi.service.BookChangeListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// filtro de bloom com todos os isbns cadastrados: "não contem" é certeza e dispensa a consulta no banco
+@Component
+public class IsbnFilter implements BookChangeListener {
+
+    private final BookRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter current;//null até a primeira carga, enquanto isso tudo "pode conter"
+    private volatile BloomFilter building;//recebe os isbns salvos durante a reconstrução
+    private final AtomicLong insertions = new AtomicLong();
+    private final LongAdder negatives = new LongAdder();
+
+    public IsbnFilter(BookRepository repository, PlatformTransactionManager transactionManager,
+                      @Value("${library.books.isbn-filter.expected-insertions:1000000}") long expectedInsertions,
+                      @Value("${library.books.isbn-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    public boolean mightContain(String isbn) {
+        BloomFilter filter = current;
+        if ( filter == null || filter.mightContain(isbn)){
+            return true;
+        }
+        negatives.increment();
+        return false;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    //reconstrói do zero para descartar os isbns de livros deletados e redimensionar pelo tamanho atual da tabela
+    @Scheduled(initialDelayString = "${library.books.isbn-filter.rebuild-interval:PT6H}",
+            fixedDelayString = "${library.books.isbn-filter.rebuild-interval:PT6H}")
+    public synchronized void rebuild() {
+        long count = repository.count();
+        BloomFilter filter = BloomFilter.create(Math.max(expectedInsertions, count + count / 5), falsePositiveRate);//folga para crescer até a proxima reconstrução
+        building = filter;//a partir daqui os saves vão para o novo filtro também
+        AtomicLong loaded = new AtomicLong();
+        transactionTemplate.execute(status -> {
+            try (Stream<String> isbns = repository.streamIsbns()) {
+                isbns.forEach(isbn -> {
+                    filter.put(isbn);
+                    loaded.incrementAndGet();
+                });
+            }
+            return null;
+        });
+        current = filter;
+        building = null;
+        insertions.set(loaded.get());
+    }
+
+    @Override
+    public void saved(Book book) {
+        BloomFilter next = building;
+        if ( next != null){
+            next.put(book.getIsbn());
+        }
+        BloomFilter filter = current;
+        if ( filter != null){
+            filter.put(book.getIsbn());
+            insertions.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void patched(Book changes) {
+        //o isbn não muda em um patch
+    }
+
+    @Override
+    public void deleted(Long id) {
+        //bloom não remove itens, o isbn continua "pode conter" até a proxima reconstrução
+    }
+
+    public IsbnFilterStats stats() {
+        BloomFilter filter = current;
+        IsbnFilterStats.IsbnFilterStatsBuilder stats = IsbnFilterStats.builder()
+                .loaded(filter != null)
+                .configuredFalsePositiveRate(falsePositiveRate)
+                .negatives(negatives.sum());
+        if ( filter != null){
+            stats.bits(filter.bitCount())
+                    .hashFunctions(filter.hashFunctions())
+                    .memoryBytes(filter.memoryBytes())
+                    .insertions(insertions.get())
+                    .expectedFalsePositiveRate(filter.expectedFalsePositiveRate(insertions.get()));
+        }
+        return stats.build();
+    }
+}
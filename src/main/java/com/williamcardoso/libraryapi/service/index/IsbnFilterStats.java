@@ -0,0 +1,22 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IsbnFilterStats {
+
+    private boolean loaded;
+    private long bits;
+    private int hashFunctions;
+    private long memoryBytes;
+    private long insertions;
+    private double configuredFalsePositiveRate;
+    private double expectedFalsePositiveRate;
+    private long negatives;//consultas ao banco evitadas
+}
@@ -0,0 +1,37 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+public final class TextNormalizer {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");//acentos separados pelo NFD
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextNormalizer() {
+    }
+
+    //minusculo e sem acentos: "Aventuras de Érico" -> "aventuras de erico"
+    public static String normalize(String text) {
+        if ( text == null){
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("");
+    }
+
+    public static List<String> tokens(String text) {
+        String normalized = normalize(text);
+        if ( normalized.isEmpty()){
+            return Collections.emptyList();
+        }
+        return Arrays.stream(SEPARATORS.split(normalized))
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,92 @@
+package com.williamcardoso.libraryapi.service.job;
+
+import com.williamcardoso.libraryapi.model.repository.LoanArchiveRepository;
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// move os emprestimos devolvidos ha mais de min-age para loan_archive, a tabela loan fica do tamanho dos livros emprestados
+@Slf4j
+@Component
+public class LoanArchiver {
+
+    private final LoanRepository loanRepository;
+    private final LoanArchiveRepository archiveRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration minAge;
+    private final int batchSize;
+    private final Duration pause;
+    private final LongAdder archived = new LongAdder();
+
+    public LoanArchiver(LoanRepository loanRepository, LoanArchiveRepository archiveRepository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${library.loans.archive.min-age:P30D}") Duration minAge,
+                        @Value("${library.loans.archive.batch-size:500}") int batchSize,
+                        @Value("${library.loans.archive.pause:PT0.1S}") Duration pause) {
+        this.loanRepository = loanRepository;
+        this.archiveRepository = archiveRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.minAge = minAge;
+        this.batchSize = batchSize;
+        this.pause = pause;
+    }
+
+    @Scheduled(initialDelayString = "${library.loans.archive.interval:PT1H}",
+            fixedDelayString = "${library.loans.archive.interval:PT1H}")
+    public void scheduledArchive() {
+        archive(LocalDate.now());
+    }
+
+    public synchronized long archive(LocalDate today) {
+        LocalDate cutoff = today.minusDays(minAge.toDays());
+        long moved = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> moveBatch(cutoff, today));//transações curtas, os locks duram um lote
+            archived.add(batch);//só depois do commit, um rollback não conta
+            moved += batch;
+        } while ( batch == batchSize && pause());
+
+        if ( moved > 0){
+            log.info("Archived {} loans returned before {}.", moved, cutoff);
+        }
+        return moved;
+    }
+
+    public long archived() {
+        return archived.sum();
+    }
+
+    private int moveBatch(LocalDate cutoff, LocalDate today) {
+        List<Long> ids = loanRepository.findReturnedBefore(cutoff, PageRequest.of(0, batchSize));
+        if ( ids.isEmpty()){
+            return 0;
+        }
+        int copied = archiveRepository.archive(ids, today);
+        int deleted = loanRepository.deleteReturned(ids);
+        if ( copied != deleted){//emprestimo alterado no meio do lote, desfaz e tenta na proxima execução
+            throw new IllegalStateException("Archived " + copied + " loans but deleted " + deleted);
+        }
+        return deleted;
+    }
+
+    private boolean pause() {//intervalo entre os lotes, não disputa o banco com as requisições
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
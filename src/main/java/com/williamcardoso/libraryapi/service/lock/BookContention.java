@@ -0,0 +1,27 @@
+package com.williamcardoso.libraryapi.service.lock;
+
+import java.util.concurrent.atomic.LongAdder;
+
+final class BookContention {
+
+    private final Long bookId;
+    final LongAdder waits = new LongAdder();
+    final LongAdder waitNanos = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder rejections = new LongAdder();
+
+    BookContention(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    BookContentionStats stats() {
+        long waitCount = waits.sum();
+        return BookContentionStats.builder()
+                .bookId(bookId)
+                .waits(waitCount)
+                .averageWaitMicros(waitCount == 0 ? 0 : waitNanos.sum() / waitCount / 1000)
+                .timeouts(timeouts.sum())
+                .rejections(rejections.sum())
+                .build();
+    }
+}
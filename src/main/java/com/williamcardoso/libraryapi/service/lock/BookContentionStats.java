@@ -0,0 +1,19 @@
+package com.williamcardoso.libraryapi.service.lock;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookContentionStats {
+
+    private Long bookId;
+    private long waits;//pedidos que encontraram o lock ocupado
+    private long averageWaitMicros;
+    private long timeouts;
+    private long rejections;//recusados em memória por ja estar emprestado
+}
@@ -0,0 +1,87 @@
+package com.williamcardoso.libraryapi.service.lock;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.williamcardoso.libraryapi.exception.ServiceBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// locks em memória por livro, divididos em faixas (stripes): pedidos do mesmo livro fazem fila, livros diferentes seguem em paralelo
+@Component
+public class BookLocks {
+
+    private final ReentrantLock[] stripes;
+    private final long timeoutNanos;
+    private final Cache<Long, BookContention> contention;//contadores apenas dos livros que tiveram espera ou recusa
+
+    public BookLocks(@Value("${library.loans.lock.stripes:256}") int stripes,
+                     @Value("${library.loans.lock.timeout:PT2S}") Duration timeout) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;//potencia de 2, indice por mascara
+        this.stripes = new ReentrantLock[size];
+        for ( int i = 0; i < size; i++){
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.timeoutNanos = timeout.toNanos();
+        this.contention = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+    }
+
+    public <T> T withLock(Long bookId, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripe(bookId)];
+        if ( !lock.tryLock()){//caminho comum sem disputa não registra nada
+            acquire(bookId, lock);
+        }
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //pedido recusado em memória depois de esperar pelo livro (ja emprestado por quem estava na frente)
+    public void rejected(Long bookId) {
+        contention.get(bookId, BookContention::new).rejections.increment();
+    }
+
+    public List<BookContentionStats> hottest(int limit) {
+        return contention.asMap().values().stream()
+                .map(BookContention::stats)
+                .sorted(Comparator.comparingLong((BookContentionStats stats) -> stats.getWaits() + stats.getRejections()).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private void acquire(Long bookId, ReentrantLock lock) {
+        BookContention counters = contention.get(bookId, BookContention::new);
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            counters.waits.increment();
+            counters.waitNanos.add(System.nanoTime() - start);
+        }
+        if ( !acquired){
+            counters.timeouts.increment();
+            throw new ServiceBusyException("Book is busy, try again later");
+        }
+    }
+
+    private int stripe(Long bookId) {
+        long hash = bookId * 0x9E3779B97F4A7C15L;//espalha ids sequenciais entre as faixas
+        return (int) (hash >>> 32) & (stripes.length - 1);
+    }
+}
@@ -0,0 +1,47 @@
+package com.williamcardoso.libraryapi.api.resource;
+
+import com.williamcardoso.libraryapi.service.LoanService;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Collections;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = BookAvailabilityController.class)
+@AutoConfigureMockMvc
+public class BookAvailabilityControllerTest {
+
+    static final String AVAILABILITY_API = "/api/books/availability";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    LoanService loanService;
+
+    @Test
+    @DisplayName("Deve separar os livros disponiveis dos emprestados na ordem recebida")
+    public void availabilityTest() throws Exception{
+
+        BDDMockito.given( loanService.loanedAmong(Mockito.anyCollection())).willReturn(Collections.singleton(2l));
+
+        mvc.perform( MockMvcRequestBuilders.get(AVAILABILITY_API).param("ids", "3,2,1,3"))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.jsonPath("available", Matchers.contains(3, 1)))
+                .andExpect( MockMvcResultMatchers.jsonPath("loaned", Matchers.contains(2)));
+    }
+}
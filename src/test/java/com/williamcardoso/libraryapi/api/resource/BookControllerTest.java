@@ -4,9 +4,17 @@ package com.williamcardoso.libraryapi.api.resource;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.williamcardoso.libraryapi.api.dto.BookDto;
+import com.williamcardoso.libraryapi.api.dto.BookLookupRequestDto;
 import com.williamcardoso.libraryapi.exception.BusinessEsception;
 import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.projection.BookVersion;
+import com.williamcardoso.libraryapi.model.projection.BookView;
+import com.williamcardoso.libraryapi.service.BookBatchResult;
+import com.williamcardoso.libraryapi.service.BookCountMode;
+import com.williamcardoso.libraryapi.service.BookCursor;
+import com.williamcardoso.libraryapi.service.BookPage;
 import com.williamcardoso.libraryapi.service.BookService;
+import com.williamcardoso.libraryapi.service.BookSuggestion;
 import org.hamcrest.Matcher;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
@@ -22,16 +30,23 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -167,6 +182,50 @@ public class BookControllerTest {
 
 
     }
+    @Test
+    @DisplayName("Deve responder 304 pela versão do livro, sem carregar o livro")
+    public void notModifiedBookTest() throws Exception {
+
+        BDDMockito.given( service.getVersion(1l)).willReturn(Optional.of(BookVersion.builder().id(1l).version(3l).build()));
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/1")).header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect( MockMvcResultMatchers.status().isNotModified())
+                .andExpect( MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect( MockMvcResultMatchers.content().string(""));
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve devolver o livro com o ETag da versão atual quando o ETag do cliente estiver desatualizado")
+    public void modifiedBookTest() throws Exception {
+
+        Book book = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").version(4l).build();
+        BDDMockito.given( service.getVersion(1l)).willReturn(Optional.of(BookVersion.builder().id(1l).version(4l).build()));
+        BDDMockito.given( service.getById(1l)).willReturn(Optional.of(book));
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/1")).header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect( MockMvcResultMatchers.jsonPath("title").value("As aventuras"));
+    }
+
+    @Test
+    @DisplayName("Deve devolver o ETag do livro carregado quando ele mudar depois da consulta da versão")
+    public void changedAfterVersionBookTest() throws Exception {
+
+        Book book = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").version(4l).build();
+        BDDMockito.given( service.getVersion(1l)).willReturn(Optional.of(BookVersion.builder().id(1l).version(3l).build()));
+        BDDMockito.given( service.getById(1l)).willReturn(Optional.of(book));
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/1")).header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.header().stringValues(HttpHeaders.ETAG, "\"4\""))
+                .andExpect( MockMvcResultMatchers.jsonPath("title").value("As aventuras"));
+    }
+
     @Test
     @DisplayName("Deve retornar resource not found quando o livro procurado não existir")
     public void bookNotFoundTest() throws Exception{
@@ -185,9 +244,8 @@ public class BookControllerTest {
     @Test
     @DisplayName("Deve deletar um livro")
     public void deleteBookTest() throws Exception {
-        // Criado para deletar pois um livro tem que existir
-        BDDMockito.given( service.getById(Mockito.anyLong()))
-                .willReturn(Optional.of(Book.builder().id(1l).build()));//somente com o id para deletar
+        // delete condicional pelo id, sem buscar o livro antes
+        BDDMockito.given( service.delete(1l, null)).willReturn(true);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .delete(BOOK_API.concat("/" + 1)) // "/api/books/1"
@@ -197,13 +255,13 @@ public class BookControllerTest {
         mvc
                 .perform(request)
                 .andExpect(MockMvcResultMatchers.status().isNoContent());
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
     }
     @Test
     @DisplayName("Deve retornar resource not found quando não encontar o livro para deletar um livro")
     public void deleteInexistentBookTest() throws Exception {
 
-        BDDMockito.given( service.getById(Mockito.anyLong()))
-                .willReturn(Optional.empty());
+        BDDMockito.given( service.delete(1l, null)).willReturn(false);//nenhuma linha apagada
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .delete(BOOK_API.concat("/" + 1)) // "/api/books/1"
@@ -248,6 +306,69 @@ public class BookControllerTest {
         ;
     }
 
+    @Test
+    @DisplayName("Deve retornar 412 ao deletar um livro que mudou depois do ETag informado no If-Match")
+    public void deleteWithStaleIfMatchTest() throws Exception {
+
+        BDDMockito.given( service.delete(1l, 3l)).willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1l));
+
+        mvc
+                .perform( MockMvcRequestBuilders.delete(BOOK_API.concat("/1")).header(HttpHeaders.IF_MATCH, "\"3\""))
+                .andExpect( MockMvcResultMatchers.status().isPreconditionFailed());
+    }
+
+    @Test
+    @DisplayName("Deve alterar somente os campos informados com um update condicional e devolver o novo ETag")
+    public void patchBookTest() throws Exception {
+
+        BDDMockito.given( service.patch(Mockito.any(Book.class))).willReturn(true);
+
+        mvc
+                .perform( MockMvcRequestBuilders.patch(BOOK_API.concat("/1"))
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Novo titulo\"}"))
+                .andExpect( MockMvcResultMatchers.status().isNoContent())
+                .andExpect( MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"4\""));
+
+        Mockito.verify(service).patch(Book.builder().id(1l).title("Novo titulo").version(3l).build());
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve responder 404 ao alterar um livro inexistente, 412 com ETag desatualizado e 400 sem campos")
+    public void patchInvalidBookTest() throws Exception {
+
+        BDDMockito.given( service.patch(Book.builder().id(1l).author("Outro").build())).willReturn(false);
+        BDDMockito.given( service.patch(Book.builder().id(1l).author("Outro").version(3l).build()))
+                .willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1l));
+
+        mvc
+                .perform( MockMvcRequestBuilders.patch(BOOK_API.concat("/1")).contentType(MediaType.APPLICATION_JSON).content("{\"author\":\"Outro\"}"))
+                .andExpect( MockMvcResultMatchers.status().isNotFound());
+        mvc
+                .perform( MockMvcRequestBuilders.patch(BOOK_API.concat("/1")).header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"author\":\"Outro\"}"))
+                .andExpect( MockMvcResultMatchers.status().isPreconditionFailed());
+        mvc
+                .perform( MockMvcRequestBuilders.patch(BOOK_API.concat("/1")).contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect( MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Deve retornar 412 quando o livro mudou depois do ETag informado no If-Match")
+    public void updateWithStaleIfMatchTest() throws Exception{
+
+        Book book = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").version(4l).build();
+        BDDMockito.given( service.getById(1l)).willReturn(Optional.of(book));
+        BDDMockito.given( service.update(Mockito.any(Book.class))).willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1l));
+
+        mvc
+                .perform( MockMvcRequestBuilders.put(BOOK_API.concat("/1?title=Novo&author=Artur")).header(HttpHeaders.IF_MATCH, "\"3\""))
+                .andExpect( MockMvcResultMatchers.status().isPreconditionFailed());
+        Mockito.verify(service).update(Mockito.argThat(updating -> updating.getVersion() == 3l));
+    }
+
     @Test
     @DisplayName("Deve retornar 404 ao tentar atualizar um livro inexistente")
     public void updateInexistentBookTest() throws Exception{
@@ -282,8 +403,9 @@ public class BookControllerTest {
                 .isbn( createNewBook().getIsbn())
                 .build();
 
-        BDDMockito.given( service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
-                .willReturn( new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0,100),1));
+        BookView view = BookView.builder().id(id).title(book.getTitle()).author(book.getAuthor()).isbn(book.getIsbn()).build();
+        BDDMockito.given( service.findViews(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(BookCountMode.EXACT)))
+                .willReturn( new BookPage<BookView>(Arrays.asList(view), PageRequest.of(0,100),1, BookCountMode.EXACT));
         //PageImpl implementação do Pageable retornando um objeto de pagina(apagina objeto encontrado)
         //Arrays.aslist  criando um array quando recebe um varargs(content)
         //Pagerequest (qual página ,qantidades de elementos) e total de registro que tem na pesquisa
@@ -312,6 +434,191 @@ public class BookControllerTest {
 
 
 
+    @Test
+    @DisplayName("Deve cadastrar livros em lote informando o resultado de cada registro")
+    public void createBooksInBatchTest() throws Exception {
+
+        BookDto valid = createNewBook();
+        BookDto invalid = BookDto.builder().title("Sem autor").isbn("002").build();
+        String ndjson = new ObjectMapper().writeValueAsString(valid) + "\n" + new ObjectMapper().writeValueAsString(invalid);
+
+        BDDMockito.given( service.saveAll(Mockito.anyList()))//apenas o registro valido chega no service
+                .willReturn(Arrays.asList(BookBatchResult.builder().id(10l).isbn("001").status(BookBatchResult.Status.CREATED).build()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(ndjson);
+
+        mvc
+                .perform(request)
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.jsonPath("received").value(2))
+                .andExpect( MockMvcResultMatchers.jsonPath("created").value(1))
+                .andExpect( MockMvcResultMatchers.jsonPath("rejected").value(1))
+                .andExpect( MockMvcResultMatchers.jsonPath("items[0].id").value(10))
+                .andExpect( MockMvcResultMatchers.jsonPath("items[1].index").value(1))
+                .andExpect( MockMvcResultMatchers.jsonPath("items[1].status").value("INVALID"))
+                .andExpect( MockMvcResultMatchers.jsonPath("items[1].errors", Matchers.hasSize(1)))
+                ;
+    }
+
+    @Test
+    @DisplayName("Deve exportar os livros filtrados em csv")
+    public void exportBooksTest() throws Exception {
+
+        Book book = Book.builder().id(1l).title("As aventuras, parte 1").author("Artur").isbn("001").build();
+
+        BDDMockito.willAnswer(invocation -> {//simulando o stream do service entregando um livro
+            Consumer<Book> consumer = invocation.getArgument(1);
+            consumer.accept(book);
+            return null;
+        }).given(service).export(Mockito.any(Book.class), Mockito.any());
+
+        MvcResult result = mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/export?format=csv&author=Artur")))
+                .andExpect( MockMvcResultMatchers.request().asyncStarted())//resposta escrita de forma assincrona
+                .andReturn();
+
+        mvc
+                .perform( MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.content().contentType("text/csv"))
+                .andExpect( MockMvcResultMatchers.content().string("id,title,author,isbn\n1,\"As aventuras, parte 1\",Artur,001\n"));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros por cursor devolvendo o token da proxima pagina")
+    public void seekBookTest() throws Exception {
+
+        Book book = Book.builder().id(7l).title("As aventuras").author("Artur").isbn("001").build();
+        BDDMockito.given( service.findAfter(Mockito.any(Book.class), Mockito.any(BookCursor.class), Mockito.eq(1)))
+                .willReturn( new SliceImpl<Book>(Arrays.asList(book), PageRequest.of(0, 1), true));
+
+        String next = BookCursor.first(Sort.by("title")).next(book).encode();
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/seek?author=Artur&size=1&sort=title")))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect( MockMvcResultMatchers.jsonPath("hasNext").value(true))
+                .andExpect( MockMvcResultMatchers.jsonPath("next").value(next))
+                .andExpect( MockMvcResultMatchers.jsonPath("totalElements").doesNotExist());//sem count
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request para um cursor invalido")
+    public void seekInvalidCursorTest() throws Exception {
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/seek?after=invalido")))
+                .andExpect( MockMvcResultMatchers.status().isBadRequest())
+                .andExpect( MockMvcResultMatchers.jsonPath("errors[0]").value("Invalid cursor."));
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros por texto")
+    public void searchBookTest() throws Exception {
+
+        Book book = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").build();
+        BDDMockito.given( service.search(Mockito.eq("aventuras"), Mockito.any(Pageable.class)))
+                .willReturn( new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/search?q=aventuras")).accept(MediaType.APPLICATION_JSON))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect( MockMvcResultMatchers.jsonPath("content[0].title").value("As aventuras"))
+                .andExpect( MockMvcResultMatchers.jsonPath("totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("Deve repassar o modo do total e informar na resposta")
+    public void findBookWithoutCountTest() throws Exception {
+
+        BookView view = BookView.builder().id(1l).title("As aventuras").author("Artur").isbn("001").build();
+        BDDMockito.given( service.findViews(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(BookCountMode.NONE)))
+                .willReturn( new BookPage<BookView>(Arrays.asList(view), PageRequest.of(0, 1), 2, BookCountMode.NONE));
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("?title=avent&page=0&size=1&count=NONE")).accept(MediaType.APPLICATION_JSON))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect( MockMvcResultMatchers.jsonPath("last").value(false))
+                .andExpect( MockMvcResultMatchers.jsonPath("countMode").value("NONE"));
+    }
+
+    @Test
+    @DisplayName("Deve sugerir livros pelo prefixo digitado")
+    public void suggestBooksTest() throws Exception {
+
+        BookSuggestion suggestion = BookSuggestion.builder().id(1l).title("As aventuras").author("Artur").isbn("001").loans(7).build();
+        BDDMockito.given( service.suggest("avent", 5)).willReturn( Arrays.asList(suggestion));
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/suggest?prefix=avent&size=5")).accept(MediaType.APPLICATION_JSON))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.jsonPath("$", Matchers.hasSize(1)))
+                .andExpect( MockMvcResultMatchers.jsonPath("[0].title").value("As aventuras"))
+                .andExpect( MockMvcResultMatchers.jsonPath("[0].loans").value(7));
+    }
+
+    @Test
+    @DisplayName("Deve recusar quantidade de sugestões acima do limite")
+    public void invalidSuggestSizeTest() throws Exception {
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/suggest?prefix=avent&size=51")).accept(MediaType.APPLICATION_JSON))
+                .andExpect( MockMvcResultMatchers.status().isBadRequest());
+        Mockito.verify(service, Mockito.never()).suggest(Mockito.anyString(), Mockito.anyInt());
+    }
+
+    @Test
+    @DisplayName("Deve buscar varios livros por isbn na ordem pedida, informando os não encontrados")
+    public void lookupBooksTest() throws Exception {
+
+        Book book = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").build();
+        BDDMockito.given( service.getBooksByIsbns(Arrays.asList("999", "001")))
+                .willReturn( Collections.singletonMap("001", book));
+        String json = new ObjectMapper().writeValueAsString(BookLookupRequestDto.builder().isbns(Arrays.asList("999", "001")).build());
+
+        mvc
+                .perform( MockMvcRequestBuilders.post(BOOK_API.concat("/lookup")).contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.jsonPath("found").value(1))
+                .andExpect( MockMvcResultMatchers.jsonPath("items[0].isbn").value("999"))
+                .andExpect( MockMvcResultMatchers.jsonPath("items[0].found").value(false))
+                .andExpect( MockMvcResultMatchers.jsonPath("items[1].book.id").value(1));
+    }
+
+    @Test
+    @DisplayName("Deve recusar a busca com ids e isbns ao mesmo tempo")
+    public void invalidLookupTest() throws Exception {
+
+        String json = new ObjectMapper().writeValueAsString(BookLookupRequestDto.builder()
+                .ids(Arrays.asList(1l)).isbns(Arrays.asList("001")).build());
+
+        mvc
+                .perform( MockMvcRequestBuilders.post(BOOK_API.concat("/lookup")).contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect( MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Deve recusar a busca com id ou isbn nulo")
+    public void nullLookupTest() throws Exception {
+
+        mvc
+                .perform( MockMvcRequestBuilders.post(BOOK_API.concat("/lookup")).contentType(MediaType.APPLICATION_JSON).content("{\"ids\":[1,null]}"))
+                .andExpect( MockMvcResultMatchers.status().isBadRequest());
+        mvc
+                .perform( MockMvcRequestBuilders.post(BOOK_API.concat("/lookup")).contentType(MediaType.APPLICATION_JSON).content("{\"isbns\":[null]}"))
+                .andExpect( MockMvcResultMatchers.status().isBadRequest());
+
+        Mockito.verify( service, Mockito.never()).getByIds(Mockito.anyCollection());
+        Mockito.verify( service, Mockito.never()).getBooksByIsbns(Mockito.anyCollection());
+    }
+
     //método para criar um livro
     private BookDto createNewBook() {
         return BookDto.builder().author("Artur").title("As aventuras").isbn("001").build();
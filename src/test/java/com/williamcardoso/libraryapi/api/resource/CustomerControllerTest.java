@@ -0,0 +1,71 @@
+package com.williamcardoso.libraryapi.api.resource;
+
+import com.williamcardoso.libraryapi.model.entity.Customer;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import com.williamcardoso.libraryapi.service.CustomerService;
+import com.williamcardoso.libraryapi.service.LoanCursor;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Optional;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = CustomerController.class)
+@AutoConfigureMockMvc
+public class CustomerControllerTest {
+
+    static final String CUSTOMER_API = "/api/customers";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    CustomerService service;
+
+    @Test
+    @DisplayName("Deve buscar os emprestimos do cliente e devolver o cursor da proxima pagina")
+    public void customerLoansTest() throws Exception{
+
+        LocalDate loandate = LocalDate.of(2020, 1, 10);
+        LoanHistory loan = LoanHistory.builder().id(7l).bookId(1l).isbn("123").customer("Fulano").loandate(loandate).returned(false).build();
+        BDDMockito.given( service.getById(1l)).willReturn(Optional.of(Customer.builder().id(1l).name("Fulano").build()));
+        BDDMockito.given( service.findLoans(Mockito.eq(1l), Mockito.any(LoanCursor.class), Mockito.eq(1)))
+                .willReturn(new SliceImpl<>(Collections.singletonList(loan), PageRequest.of(0, 1), true));
+
+        mvc.perform( MockMvcRequestBuilders.get(CUSTOMER_API + "/1/loans").param("size", "1"))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect( MockMvcResultMatchers.jsonPath("hasNext").value(true))
+                .andExpect( MockMvcResultMatchers.jsonPath("next").value(new LoanCursor(loandate, 7l).encode()));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 para cliente inexistente")
+    public void customerNotFoundTest() throws Exception{
+
+        BDDMockito.given( service.getById(Mockito.anyLong())).willReturn(Optional.empty());
+
+        mvc.perform( MockMvcRequestBuilders.get(CUSTOMER_API + "/1/loans"))
+                .andExpect( MockMvcResultMatchers.status().isNotFound());
+
+        Mockito.verify( service, Mockito.never()).findLoans(Mockito.anyLong(), Mockito.any(), Mockito.anyInt());
+    }
+}
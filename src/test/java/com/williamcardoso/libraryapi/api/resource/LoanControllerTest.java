@@ -1,11 +1,19 @@
 package com.williamcardoso.libraryapi.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.williamcardoso.libraryapi.api.dto.LoanBatchRequestDto;
 import com.williamcardoso.libraryapi.api.dto.LoanDto;
+import com.williamcardoso.libraryapi.api.dto.ReturnedLoanDto;
 import com.williamcardoso.libraryapi.exception.BusinessEsception;
+import com.williamcardoso.libraryapi.exception.ServiceBusyException;
 import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Customer;
 import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
 import com.williamcardoso.libraryapi.service.BookService;
+import com.williamcardoso.libraryapi.service.CustomerService;
+import com.williamcardoso.libraryapi.service.LoanBatchMode;
+import com.williamcardoso.libraryapi.service.LoanBatchResult;
 import com.williamcardoso.libraryapi.service.LoanService;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
@@ -17,16 +25,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 
 @ExtendWith(SpringExtension.class)
@@ -46,6 +61,9 @@ public class LoanControllerTest {
     @MockBean
     private LoanService loandService;
 
+    @MockBean
+    CustomerService customerService;
+
     @Test@DisplayName("Deve realizar um emprestimo")
     public void createLoanTest() throws Exception{
 
@@ -58,7 +76,7 @@ public class LoanControllerTest {
         BDDMockito.given( bookService.getBookByIsbn("123"))
                 .willReturn(Optional.of(book));//retornando livro que estara na base de dados
 
-        Loan loan = Loan.builder().id(1l).customer("Fulano").book(book).loandate(LocalDate.now()).build();
+        Loan loan = Loan.builder().id(1l).customer(Customer.builder().id(1l).name("Fulano").build()).book(book).loandate(LocalDate.now()).build();
         BDDMockito.given( loandService.save(Mockito.any(Loan.class))).willReturn(loan);
 
 
@@ -129,6 +147,117 @@ public class LoanControllerTest {
         ;
 
     }
+    @Test
+    @DisplayName("Deve responder o emprestimo em group commit depois de gravado")
+    public void createAsyncLoanTest() throws Exception{
+
+        String json = new ObjectMapper().writeValueAsString(LoanDto.builder().isbn("123").customer("Fulano").build());
+        Book book = Book.builder().id(1l).isbn("123").build();
+        BDDMockito.given( bookService.getBookByIsbn("123")).willReturn(Optional.of(book));
+        BDDMockito.given( loandService.saveAsync(Mockito.any(Loan.class)))
+                .willReturn( CompletableFuture.completedFuture(Loan.builder().id(1l).book(book).build()));
+
+        MvcResult result = mvc.perform( MockMvcRequestBuilders.post(LOAN_API + "/async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect( MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mvc.perform( MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect( MockMvcResultMatchers.status().isCreated())
+                .andExpect( MockMvcResultMatchers.content().string("1"));
+    }
+    @Test
+    @DisplayName("Deve retornar 503 quando a fila do group commit estiver cheia")
+    public void busyAsyncLoanTest() throws Exception{
+
+        String json = new ObjectMapper().writeValueAsString(LoanDto.builder().isbn("123").customer("Fulano").build());
+        BDDMockito.given( bookService.getBookByIsbn("123")).willReturn(Optional.of(Book.builder().id(1l).isbn("123").build()));
+        BDDMockito.given( loandService.saveAsync(Mockito.any(Loan.class)))
+                .willThrow( new ServiceBusyException("Too many pending loans, try again later"));
+
+        mvc.perform( MockMvcRequestBuilders.post(LOAN_API + "/async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect( MockMvcResultMatchers.status().isServiceUnavailable())
+                .andExpect( MockMvcResultMatchers.header().string("Retry-After", "1"))
+                .andExpect( MockMvcResultMatchers.jsonPath("errors[0]").value("Too many pending loans, try again later"));
+    }
+    @Test
+    @DisplayName("Deve devolver um livro")
+    public void returnBookTest() throws Exception{
+
+        String json = new ObjectMapper().writeValueAsString(ReturnedLoanDto.builder().returned(true).build());
+        Loan loan = Loan.builder().id(1l).book(Book.builder().id(1l).build()).build();
+        BDDMockito.given( loandService.getById(1l)).willReturn(Optional.of(loan));
+
+        mvc.perform( MockMvcRequestBuilders.patch(LOAN_API + "/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect( MockMvcResultMatchers.status().isOk());
+
+        Mockito.verify( loandService).update(Mockito.argThat(updated -> updated.getReturned()));
+    }
+    @Test
+    @DisplayName("Deve retornar 404 ao devolver um emprestimo inexistente")
+    public void returnInexistentLoanTest() throws Exception{
+
+        String json = new ObjectMapper().writeValueAsString(ReturnedLoanDto.builder().returned(true).build());
+        BDDMockito.given( loandService.getById(Mockito.anyLong())).willReturn(Optional.empty());
 
+        mvc.perform( MockMvcRequestBuilders.patch(LOAN_API + "/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect( MockMvcResultMatchers.status().isNotFound());
+
+        Mockito.verify( loandService, Mockito.never()).update(Mockito.any(Loan.class));
+    }
+    @Test
+    @DisplayName("Deve retornar 400 ao devolver um emprestimo sem informar returned")
+    public void returnLoanWithoutReturnedTest() throws Exception{
 
+        mvc.perform( MockMvcRequestBuilders.patch(LOAN_API + "/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect( MockMvcResultMatchers.status().isBadRequest())
+                .andExpect( MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(1)));
+
+        Mockito.verify( loandService, Mockito.never()).update(Mockito.any(Loan.class));
+    }
+    @Test
+    @DisplayName("Deve buscar o historico de emprestimos")
+    public void loanHistoryTest() throws Exception{
+
+        LoanHistory history = LoanHistory.builder().id(1l).bookId(1l).isbn("123").customer("Fulano")
+                .loandate(LocalDate.now()).returned(true).archived(true).build();
+        BDDMockito.given( loandService.history(Mockito.eq("123"), Mockito.isNull(), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Collections.singletonList(history), PageRequest.of(0, 10), 1));
+
+        mvc.perform( MockMvcRequestBuilders.get(LOAN_API + "/history?isbn=123&page=0&size=10"))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect( MockMvcResultMatchers.jsonPath("content[0].archived").value(true))
+                .andExpect( MockMvcResultMatchers.jsonPath("totalElements").value(1));
+    }
+    @Test
+    @DisplayName("Deve emprestar varios livros em uma requisição e informar o resultado de cada isbn")
+    public void createBatchLoanTest() throws Exception{
+
+        String json = new ObjectMapper().writeValueAsString(LoanBatchRequestDto.builder().customer("Fulano")
+                .isbns(Arrays.asList("123", "456")).mode(LoanBatchMode.BEST_EFFORT).build());
+        Customer customer = Customer.builder().id(1l).name("Fulano").build();
+        BDDMockito.given( customerService.getOrCreate("Fulano")).willReturn(customer);
+        BDDMockito.given( loandService.saveAll(customer, Arrays.asList("123", "456"), LoanBatchMode.BEST_EFFORT))
+                .willReturn(Arrays.asList(LoanBatchResult.builder().id(1l).isbn("123").status(LoanBatchResult.Status.CREATED).build(),
+                        LoanBatchResult.builder().isbn("456").status(LoanBatchResult.Status.NOT_FOUND).message("Book not found for passed isbn").build()));
+
+        mvc.perform( MockMvcRequestBuilders.post(LOAN_API + "/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect( MockMvcResultMatchers.status().isOk())
+                .andExpect( MockMvcResultMatchers.jsonPath("created").value(1))
+                .andExpect( MockMvcResultMatchers.jsonPath("rejected").value(1))
+                .andExpect( MockMvcResultMatchers.jsonPath("items[1].status").value("NOT_FOUND"))
+                .andExpect( MockMvcResultMatchers.jsonPath("items[1].errors[0]").value("Book not found for passed isbn"));
+    }
 }
@@ -0,0 +1,33 @@
+package com.williamcardoso.libraryapi.config;
+
+import com.williamcardoso.libraryapi.model.repository.BookRepository;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+public class RepositoryMetricsAspectTest {
+
+    @Test
+    @DisplayName("Deve registrar o tempo de cada metodo do repositorio com o nome do repositorio")
+    public void timeRepositoryMethodTest(){
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AspectJProxyFactory factory = new AspectJProxyFactory(Mockito.mock(BookRepository.class));
+        factory.addInterface(BookRepository.class);
+        factory.addAspect(new RepositoryMetricsAspect(registry));
+        BookRepository repository = factory.getProxy();
+
+        repository.existsByIsbn("123");
+        repository.existsByIsbn("456");
+        repository.findById(1l);
+
+        Timer exists = registry.find(RepositoryMetricsAspect.METRIC).tag("repository", "BookRepository").tag("method", "existsByIsbn").timer();
+        Timer findById = registry.find(RepositoryMetricsAspect.METRIC).tag("repository", "BookRepository").tag("method", "findById").timer();
+        Assertions.assertThat( exists.count()).isEqualTo(2);
+        Assertions.assertThat( findById.count()).isEqualTo(1);
+    }
+}
@@ -3,6 +3,8 @@ package com.williamcardoso.libraryapi.model.repository;
 // testes de integração
 
 import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.projection.BookVersion;
+import com.williamcardoso.libraryapi.model.projection.BookView;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,10 +12,18 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -93,6 +103,16 @@ public class BookRepositoryTest {
         Assertions.assertThat( savedBook.getId()).isNotNull();
     }
     @Test
+    @DisplayName("Deve impedir dois livros com o mesmo isbn")
+    public void uniqueIsbnTest(){
+
+        entityManager.persist(createNewBook("123"));
+
+        Throwable exception = Assertions.catchThrowable(() -> repository.saveAndFlush(createNewBook("123")));
+
+        Assertions.assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+    }
+    @Test
     @DisplayName("Deve deletar um livro")
     public void deleteBookTest(){
 
@@ -106,6 +126,91 @@ public class BookRepositoryTest {
         Book deletedBook = entityManager.find(Book.class, book.getId());//verificando se realmente foi deletado.
         Assertions.assertThat(deletedBook).isNull();
     }
+    @Test
+    @DisplayName("Deve buscar os livros depois do cursor na ordem do titulo")
+    public void findAfterTest(){
+
+        Book primeiro = Book.builder().title("A").author("Fulano").isbn("1").build();
+        Book segundo = Book.builder().title("B").author("Fulano").isbn("2").build();
+        Book terceiro = Book.builder().title("B").author("Ciclano").isbn("3").build();
+        entityManager.persist(primeiro);
+        entityManager.persist(segundo);
+        entityManager.persist(terceiro);
 
+        List<Book> books = repository.findAfter(Example.of(new Book()), "title", Sort.Direction.ASC, "A", primeiro.getId(), 10);
 
+        Assertions.assertThat( books).extracting(Book::getIsbn).containsExactly("2", "3");
+    }
+    @Test
+    @DisplayName("Deve projetar os livros filtrados direto no BookView")
+    public void findViewsTest(){
+
+        entityManager.persist(Book.builder().title("Aventuras").author("Fulano").isbn("1").build());
+        entityManager.persist(Book.builder().title("Mais Aventuras").author("Ciclano").isbn("2").build());
+        entityManager.persist(Book.builder().title("Outro").author("Fulano").isbn("3").build());
+
+        Example<Book> example = Example.of(Book.builder().title("aventuras").build(),
+                ExampleMatcher.matching().withIgnoreCase().withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
+        List<BookView> page = repository.findViews(example, PageRequest.of(0, 1, Sort.by("title")), 1);
+
+        Assertions.assertThat( page).extracting(BookView::getIsbn).containsExactly("1", "2");//uma linha a mais pedida
+        Assertions.assertThat( page.get(0).getAuthor()).isEqualTo("Fulano");
+        Assertions.assertThat( repository.count(example)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve incrementar a versão a cada alteração e ler a versão sem carregar o livro")
+    public void versionTest(){
+
+        Book book = entityManager.persistFlushFind(createNewBook("123"));
+        book.setTitle("Outro titulo");
+        entityManager.flush();
+        entityManager.clear();
+
+        BookVersion version = repository.findVersion(book.getId()).get();
+
+        Assertions.assertThat( version.getVersion()).isEqualTo(1l);
+        Assertions.assertThat( version.getUpdatedAt()).isNotNull();
+        Assertions.assertThat( repository.findVersion(book.getId() + 1)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve alterar e deletar pela chave conferindo a versão quando informada")
+    public void conditionalPatchAndDeleteTest(){
+
+        Long id = entityManager.persistFlushFind(createNewBook("123")).getId();
+        entityManager.clear();
+
+        Assertions.assertThat( repository.patchIfMatches(id, "Outro titulo", null, 1l, Instant.now())).isZero();//versão errada
+        Assertions.assertThat( repository.patchIfMatches(id, "Outro titulo", null, 0l, Instant.now())).isEqualTo(1);
+        Assertions.assertThat( repository.patchIfMatches(id, null, "Outro autor", null, Instant.now())).isEqualTo(1);
+        Assertions.assertThat( repository.patchIfMatches(id + 1, "Outro titulo", null, null, Instant.now())).isZero();
+
+        Book book = repository.findById(id).get();
+        Assertions.assertThat( book.getTitle()).isEqualTo("Outro titulo");
+        Assertions.assertThat( book.getAuthor()).isEqualTo("Outro autor");
+        Assertions.assertThat( book.getVersion()).isEqualTo(2l);
+        entityManager.clear();
+
+        Assertions.assertThat( repository.deleteIfMatches(id, 1l)).isZero();
+        Assertions.assertThat( repository.deleteIfMatches(id, 2l)).isEqualTo(1);
+        Assertions.assertThat( repository.deleteIfMatches(id, null)).isZero();
+        Assertions.assertThat( repository.existsById(id)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve tratar % e _ escapados como literais no filtro da exportação")
+    public void streamAllEscapeTest(){
+
+        entityManager.persist(Book.builder().title("100% Aventuras").author("Fulano").isbn("1").build());
+        entityManager.persist(Book.builder().title("1000 Aventuras").author("Fulano").isbn("2").build());
+        entityManager.flush();
+
+        try (Stream<Book> books = repository.streamAll(null, "%100\\%%", null, null)) {
+            Assertions.assertThat( books.map(Book::getIsbn)).containsExactly("1");
+        }
+        try (Stream<Book> books = repository.streamAll(null, "%100\\_%", null, null)) {
+            Assertions.assertThat( books.map(Book::getIsbn)).isEmpty();
+        }
+    }
 }
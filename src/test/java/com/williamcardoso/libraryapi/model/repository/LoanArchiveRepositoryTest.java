@@ -0,0 +1,117 @@
+package com.williamcardoso.libraryapi.model.repository;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Customer;
+import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.entity.LoanArchive;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class LoanArchiveRepositoryTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    LoanArchiveRepository repository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    Customer customer;
+
+    @BeforeEach
+    public void setup(){
+        customer = entityManager.persist(Customer.builder().name("Fulano").build());
+    }
+
+    @Test
+    @DisplayName("Deve mover para o arquivo somente os emprestimos devolvidos antes da data de corte")
+    public void archiveTest(){
+
+        Book book = entityManager.persist(Book.builder().title("Aventuras").author("Fulano").isbn("123").build());
+        Loan old = entityManager.persist(createNewLoan(book, LocalDate.now().minusDays(60), true));
+        entityManager.persist(createNewLoan(book, LocalDate.now().minusDays(1), true));//devolvido ha pouco
+        Loan open = entityManager.persist(createNewLoan(book, LocalDate.now().minusDays(90), false));
+        entityManager.flush();
+
+        List<Long> ids = loanRepository.findReturnedBefore(LocalDate.now().minusDays(30), PageRequest.of(0, 10));
+        int copied = repository.archive(Arrays.asList(old.getId(), open.getId()), LocalDate.now());
+        int deleted = loanRepository.deleteReturned(Arrays.asList(old.getId(), open.getId()));
+        entityManager.clear();
+
+        Assertions.assertThat(ids).containsExactly(old.getId());
+        Assertions.assertThat(copied).isEqualTo(1);
+        Assertions.assertThat(deleted).isEqualTo(1);
+        Assertions.assertThat(loanRepository.count()).isEqualTo(2);
+        LoanArchive archived = repository.findById(old.getId()).get();
+        Assertions.assertThat(archived.getIsbn()).isEqualTo("123");
+        Assertions.assertThat(archived.getCustomerId()).isEqualTo(customer.getId());
+        Assertions.assertThat(archived.getCustomer()).isEqualTo("Fulano");
+        Assertions.assertThat(archived.getArchivedAt()).isEqualTo(LocalDate.now());
+    }
+
+    @Test
+    @DisplayName("Deve buscar o historico arquivado por isbn e cliente")
+    public void findHistoryTest(){
+
+        entityManager.persist(createNewArchive(1l, "123", "Fulano", 10));
+        entityManager.persist(createNewArchive(2l, "123", "Ciclano", 20));
+        entityManager.persist(createNewArchive(3l, "456", "Fulano", 30));
+
+        Page<LoanHistory> byIsbn = repository.findHistory("123", null, PageRequest.of(0, 10));
+        Page<LoanHistory> byCustomer = repository.findHistory(null, "Fulano", PageRequest.of(0, 1));
+
+        Assertions.assertThat(byIsbn.getContent()).extracting(LoanHistory::getId).containsExactly(1l, 2l);//mais recentes primeiro
+        Assertions.assertThat(byIsbn.getContent()).allMatch(history -> history.getArchived() && history.getReturned());
+        Assertions.assertThat(byCustomer.getContent()).extracting(LoanHistory::getId).containsExactly(1l);
+        Assertions.assertThat(byCustomer.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve buscar o historico arquivado do cliente pelo cursor (loandate, id)")
+    public void findByCustomerBeforeTest(){
+
+        LoanArchive first = createNewArchive(1l, "123", "Fulano", 10);
+        first.setCustomerId(customer.getId());
+        LoanArchive second = createNewArchive(2l, "456", "Fulano", 20);
+        second.setCustomerId(customer.getId());
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persist(createNewArchive(3l, "789", "Ciclano", 5));//outro cliente
+
+        List<LoanHistory> page = repository.findByCustomerBefore(customer.getId(), LocalDate.of(9999, 12, 31), Long.MAX_VALUE, PageRequest.of(0, 1));
+        List<LoanHistory> next = repository.findByCustomerBefore(customer.getId(), page.get(0).getLoandate(), page.get(0).getId(), PageRequest.of(0, 10));
+
+        Assertions.assertThat(page).extracting(LoanHistory::getId).containsExactly(1l);
+        Assertions.assertThat(next).extracting(LoanHistory::getId).containsExactly(2l);
+        Assertions.assertThat(next).allMatch(history -> history.getArchived() && history.getReturned());
+    }
+
+    private Loan createNewLoan(Book book, LocalDate loandate, boolean returned) {
+        return Loan.builder().book(book).customer(customer).loandate(loandate).returned(returned).build();
+    }
+
+    private LoanArchive createNewArchive(Long id, String isbn, String customer, int daysAgo) {
+        return LoanArchive.builder().id(id).bookId(id).isbn(isbn).customer(customer)
+                .loandate(LocalDate.now().minusDays(daysAgo)).archivedAt(LocalDate.now()).build();
+    }
+}
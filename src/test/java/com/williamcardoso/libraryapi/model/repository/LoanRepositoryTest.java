@@ -0,0 +1,133 @@
+package com.williamcardoso.libraryapi.model.repository;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Customer;
+import com.williamcardoso.libraryapi.model.entity.Loan;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import com.williamcardoso.libraryapi.model.projection.OverdueLoan;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class LoanRepositoryTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    LoanRepository repository;
+
+    Customer customer;
+
+    @BeforeEach
+    public void setup(){
+        customer = entityManager.persist(Customer.builder().name("Fulano").build());
+    }
+
+    @Test
+    @DisplayName("Deve verificar se existe emprestimo não devolvido para o livro")
+    public void existsByBookAndNotReturnedTest(){
+
+        Book book = entityManager.persist(createNewBook("123"));
+        entityManager.persist(createNewLoan(book));
+
+        boolean exists = repository.existsByBookAndNotReturned(book);
+
+        Assertions.assertThat(exists).isTrue();
+    }
+
+    @Test
+    @DisplayName("Não deve permitir dois emprestimos ativos do mesmo livro")
+    public void uniqueActiveLoanTest(){
+
+        Book book = entityManager.persist(createNewBook("123"));
+        entityManager.persist(createNewLoan(book));
+
+        Throwable exception = Assertions.catchThrowable(() -> repository.saveAndFlush(createNewLoan(book)));
+
+        Assertions.assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    @DisplayName("Deve permitir emprestar novamente um livro devolvido")
+    public void loanReturnedBookTest(){
+
+        Book book = entityManager.persist(createNewBook("123"));
+        Loan returned = entityManager.persist(createNewLoan(book));
+        returned.setReturned(true);
+        entityManager.flush();
+
+        Loan loan = repository.saveAndFlush(createNewLoan(book));
+
+        Assertions.assertThat(loan.getId()).isNotNull();
+        Assertions.assertThat(returned.getActiveBookId()).isNull();
+        Assertions.assertThat(repository.existsByBookAndNotReturned(book)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve buscar os emprestimos atrasados em blocos depois da marca da ultima varredura")
+    public void findOverdueAfterTest(){
+
+        Book first = entityManager.persist(createNewBook("1"));
+        Book second = entityManager.persist(createNewBook("2"));
+        Book third = entityManager.persist(createNewBook("3"));
+        Loan old = entityManager.persist(createNewLoan(first, LocalDate.now().minusDays(10)));
+        Loan late = entityManager.persist(createNewLoan(second, LocalDate.now().minusDays(5)));
+        entityManager.persist(createNewLoan(third, LocalDate.now()));//ainda no prazo
+        LocalDate cutoff = LocalDate.now().minusDays(3);
+
+        List<OverdueLoan> chunk = repository.findOverdueAfter(cutoff, LocalDate.of(1970, 1, 1), 0l, PageRequest.of(0, 1));
+        List<OverdueLoan> next = repository.findOverdueAfter(cutoff, chunk.get(0).getLoandate(), chunk.get(0).getId(), PageRequest.of(0, 1));
+        List<OverdueLoan> end = repository.findOverdueAfter(cutoff, next.get(0).getLoandate(), next.get(0).getId(), PageRequest.of(0, 1));
+
+        Assertions.assertThat(chunk).extracting(OverdueLoan::getId).containsExactly(old.getId());
+        Assertions.assertThat(next).extracting(OverdueLoan::getIsbn).containsExactly("2");
+        Assertions.assertThat(next.get(0).getId()).isEqualTo(late.getId());
+        Assertions.assertThat(end).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve buscar os emprestimos do cliente por cursor, mais recentes primeiro")
+    public void findByCustomerBeforeTest(){
+
+        Customer other = entityManager.persist(Customer.builder().name("Ciclano").build());
+        Loan old = entityManager.persist(createNewLoan(entityManager.persist(createNewBook("1")), LocalDate.now().minusDays(10)));
+        Loan recent = entityManager.persist(createNewLoan(entityManager.persist(createNewBook("2")), LocalDate.now()));
+        entityManager.persist(Loan.builder().book(entityManager.persist(createNewBook("3"))).customer(other).loandate(LocalDate.now()).build());
+
+        List<LoanHistory> first = repository.findByCustomerBefore(customer.getId(), LocalDate.of(9999, 12, 31), Long.MAX_VALUE, PageRequest.of(0, 1));
+        List<LoanHistory> next = repository.findByCustomerBefore(customer.getId(), first.get(0).getLoandate(), first.get(0).getId(), PageRequest.of(0, 10));
+
+        Assertions.assertThat(first).extracting(LoanHistory::getId).containsExactly(recent.getId());
+        Assertions.assertThat(next).extracting(LoanHistory::getId).containsExactly(old.getId());
+        Assertions.assertThat(next.get(0).getCustomer()).isEqualTo("Fulano");
+        Assertions.assertThat(repository.countActiveByCustomer(customer.getId())).isEqualTo(2);
+    }
+
+    private Book createNewBook(String isbn) {
+        return Book.builder().title("Aventuras").author("Fulano").isbn(isbn).build();
+    }
+
+    private Loan createNewLoan(Book book) {
+        return createNewLoan(book, LocalDate.now());
+    }
+
+    private Loan createNewLoan(Book book, LocalDate loandate) {
+        return Loan.builder().book(book).customer(customer).loandate(loandate).build();
+    }
+}
@@ -2,25 +2,45 @@ package com.williamcardoso.libraryapi.service;
 
 import com.williamcardoso.libraryapi.exception.BusinessEsception;
 import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.projection.BookVersion;
+import com.williamcardoso.libraryapi.model.projection.BookView;
 import com.williamcardoso.libraryapi.model.repository.BookRepository;
+import com.williamcardoso.libraryapi.service.cache.BookCache;
+import com.williamcardoso.libraryapi.service.cache.BookCountCache;
+import com.williamcardoso.libraryapi.service.cache.BookSearchCache;
 import com.williamcardoso.libraryapi.service.impl.BookServiceImpl;
+import com.williamcardoso.libraryapi.service.index.BookSearchIndex;
+import com.williamcardoso.libraryapi.service.index.BookSuggestIndex;
+import com.williamcardoso.libraryapi.service.index.IsbnFilter;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.hibernate.exception.ConstraintViolationException;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -32,9 +52,34 @@ public class BookServiceTest {
     @MockBean
     BookRepository repository;
 
+    @MockBean
+    EntityManager entityManager;
+
+    @MockBean
+    BookSearchIndex searchIndex;
+
+    @MockBean
+    BookSuggestIndex suggestIndex;
+
+    BookCache cache;
+
+    BookSearchCache searchCache;
+
+    BookCountCache countCache;
+
+    IsbnFilter isbnFilter;
+
+    BookChangeListener listener;
+
     @BeforeEach
     public void setUp(){
-        this.service = new BookServiceImpl(repository);
+        this.cache = new BookCache(100, Duration.ofMinutes(10));
+        this.searchCache = new BookSearchCache(100, Duration.ofMinutes(1));
+        this.countCache = new BookCountCache(repository, Mockito.mock(PlatformTransactionManager.class), 100, Duration.ofSeconds(30));//sem carga, sempre conta
+        this.isbnFilter = new IsbnFilter(repository, Mockito.mock(PlatformTransactionManager.class), 1000, 0.01);//sem carga, tudo "pode conter"
+        this.listener = Mockito.mock(BookChangeListener.class);
+        this.service = new BookServiceImpl(repository, entityManager, searchIndex, suggestIndex, cache, searchCache, countCache, isbnFilter,
+                Arrays.asList(cache, searchCache, countCache, isbnFilter, listener));
     }
 
 
@@ -44,8 +89,7 @@ public class BookServiceTest {
 
         //cenário
         Book book = createValidBook();
-        Mockito.when( repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
-        Mockito.when( repository.save(book))
+        Mockito.when( repository.saveAndFlush(book))
                 .thenReturn(Book.builder()
                         .id(1l).isbn("123")
                         .title("As aventuras")
@@ -61,6 +105,7 @@ public class BookServiceTest {
         Assertions.assertThat( savedBook.getIsbn()).isEqualTo("123");
         Assertions.assertThat( savedBook.getTitle()).isEqualTo("As aventuras");
         Assertions.assertThat( savedBook.getAuthor()).isEqualTo("Fulano");
+        Mockito.verify( listener, Mockito.times(1)).saved(savedBook);//indices avisados do novo livro
 
 
 
@@ -74,7 +119,9 @@ public class BookServiceTest {
         //cenario
 
         Book book = createValidBook();
-        Mockito.when( repository.existsByIsbn(Mockito.anyString())).thenReturn(true);//simulando metodo pois o repository esta mocado.
+        Mockito.when( repository.saveAndFlush(book))//simulando a violação do indice unico do isbn
+                .thenThrow(new DataIntegrityViolationException("duplicado",
+                        new ConstraintViolationException("duplicado", null, "UK_BOOK_ISBN_INDEX_1")));
 
         // execução
 
@@ -84,7 +131,7 @@ public class BookServiceTest {
 
         Assertions.assertThat(exception).isInstanceOf(BusinessEsception.class)
                 .hasMessage("Isbn já cadastrado.");
-        Mockito.verify(repository,Mockito.never()).save(book);//verifica que nunca o save foi executado
+        Mockito.verify(repository,Mockito.never()).existsByIsbn(Mockito.anyString());//não faz mais a consulta antes do insert
 
 
 
@@ -144,8 +191,61 @@ public class BookServiceTest {
 
         //verificação
         Mockito.verify( repository, Mockito.times(1)).delete(book);
+        Mockito.verify( listener, Mockito.times(1)).deleted(1l);
+
+    }
+    @Test
+    @DisplayName("Deve deletar um livro pelo id com um unico delete condicional")
+    public void deleteByIdTest(){
+        Mockito.when( repository.deleteIfMatches(1l, null)).thenReturn(1);
+        Mockito.when( repository.deleteIfMatches(2l, null)).thenReturn(0);
+
+        Assertions.assertThat( service.delete(1l, null)).isTrue();
+        Assertions.assertThat( service.delete(2l, null)).isFalse();
+
+        Mockito.verify( repository, Mockito.never()).findById(Mockito.anyLong());
+        Mockito.verify( repository, Mockito.never()).findVersion(Mockito.anyLong());//sem versão, nenhuma linha é 404
+        Mockito.verify( listener, Mockito.times(1)).deleted(1l);
+        Mockito.verify( listener, Mockito.never()).deleted(2l);
+    }
+
+    @Test
+    @DisplayName("Deve separar livro inexistente de versão desatualizada quando o delete condicional não apaga nada")
+    public void deleteByIdWithStaleVersionTest(){
+        Mockito.when( repository.deleteIfMatches(Mockito.anyLong(), Mockito.eq(3l))).thenReturn(0);
+        Mockito.when( repository.findVersion(1l)).thenReturn(Optional.of(BookVersion.builder().id(1l).version(4l).build()));
+        Mockito.when( repository.findVersion(2l)).thenReturn(Optional.empty());
+
+        org.junit.jupiter.api.Assertions.assertThrows( ObjectOptimisticLockingFailureException.class, () -> service.delete(1l, 3l));
+        Assertions.assertThat( service.delete(2l, 3l)).isFalse();
+        Mockito.verify( listener, Mockito.never()).deleted(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve alterar um livro com um unico update condicional e avisar somente os campos alterados")
+    public void patchBookTest(){
+        Book changes = Book.builder().id(1l).title("Memorias").version(3l).build();
+        Mockito.when( repository.patchIfMatches(Mockito.eq(1l), Mockito.eq("Memorias"), Mockito.isNull(), Mockito.eq(3l), Mockito.any())).thenReturn(1);
+
+        Assertions.assertThat( service.patch(changes)).isTrue();
 
+        Mockito.verify( repository, Mockito.never()).findById(Mockito.anyLong());
+        Mockito.verify( repository, Mockito.never()).save(Mockito.any(Book.class));
+        Mockito.verify( listener, Mockito.times(1)).patched(changes);
     }
+
+    @Test
+    @DisplayName("Deve lançar conflito ao alterar um livro com versão desatualizada")
+    public void patchBookWithStaleVersionTest(){
+        Book changes = Book.builder().id(1l).author("Fulano").version(3l).build();
+        Mockito.when( repository.patchIfMatches(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(0);
+        Mockito.when( repository.findVersion(1l)).thenReturn(Optional.of(BookVersion.builder().id(1l).version(4l).build()));
+
+        org.junit.jupiter.api.Assertions.assertThrows( ObjectOptimisticLockingFailureException.class, () -> service.patch(changes));
+        Assertions.assertThat( service.patch(Book.builder().id(2l).author("Fulano").build())).isFalse();
+        Mockito.verify( listener, Mockito.never()).patched(Mockito.any());
+    }
+
     @Test
     @DisplayName("Deve ocorrer erro ao tentar deletar um livro inexistente")
     public void deleteInvalidBookTest(){
@@ -208,8 +308,8 @@ public class BookServiceTest {
         List<Book> lista = Arrays.asList(book);
         Page<Book> page = new PageImpl<Book>(lista, pageRequest,1);
         //
-        Mockito.when( repository.findAll(Mockito.any(Example.class),Mockito.any(PageRequest.class)))
-                .thenReturn(page);
+        Mockito.when( repository.findPage(Mockito.any(Example.class),Mockito.any(PageRequest.class), Mockito.eq(0)))
+                .thenReturn(lista);
 
         //execuçção
         Page<Book> result = service.find(book, pageRequest);
@@ -223,6 +323,56 @@ public class BookServiceTest {
 
 
     }
+    @Test
+    @DisplayName("Deve filtrar livros por projeção com o mesmo Example do find, contando quando a pagina está cheia")
+    public void findViewsTest(){
+        Book filter = Book.builder().title("Aventuras").build();
+        PageRequest pageRequest = PageRequest.of(0, 1);
+        List<BookView> views = Arrays.asList(BookView.builder().id(1l).title("Aventuras").build());
+        Mockito.when( repository.findViews(Mockito.any(Example.class), Mockito.eq(pageRequest), Mockito.eq(0))).thenReturn(views);
+        Mockito.when( repository.count(Mockito.any(Example.class))).thenReturn(7l);
+
+        BookPage<BookView> result = service.findViews(filter, pageRequest, BookCountMode.EXACT);
+
+        Assertions.assertThat( result.getContent()).isEqualTo(views);
+        Assertions.assertThat( result.getTotalElements()).isEqualTo(7);
+        Assertions.assertThat( result.getCountMode()).isEqualTo(BookCountMode.EXACT);
+    }
+
+    @Test
+    @DisplayName("Deve buscar uma linha a mais em vez do count quando o total não é pedido")
+    public void findViewsWithoutCountTest(){
+        PageRequest pageRequest = PageRequest.of(0, 1);
+        List<BookView> views = Arrays.asList(BookView.builder().id(1l).build(), BookView.builder().id(2l).build());
+        Mockito.when( repository.findViews(Mockito.any(Example.class), Mockito.eq(pageRequest), Mockito.eq(1))).thenReturn(views);
+
+        BookPage<BookView> result = service.findViews(new Book(), pageRequest, BookCountMode.NONE);
+
+        Assertions.assertThat( result.getContent()).extracting(BookView::getId).containsExactly(1l);
+        Assertions.assertThat( result.hasNext()).isTrue();
+        Assertions.assertThat( result.getCountMode()).isEqualTo(BookCountMode.NONE);
+        Mockito.verify( repository, Mockito.never()).count(Mockito.any(Example.class));
+    }
+    @Test
+    @DisplayName("Deve servir a mesma busca pelo cache ate a proxima alteração no cadastro")
+    public void findViewsCachedTest(){
+        Book book = Book.builder().id(1l).title("Aventuras").author("Fulano").isbn("123").build();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        List<BookView> views = Arrays.asList(BookView.builder().id(1l).title("Aventuras").build());
+        Mockito.when( repository.findViews(Mockito.any(Example.class), Mockito.eq(pageRequest), Mockito.eq(0))).thenReturn(views);
+        Mockito.when( repository.findAllById(Arrays.asList(1l))).thenReturn(Arrays.asList(book));
+
+        service.findViews(new Book(), pageRequest, BookCountMode.EXACT);
+        Page<BookView> cached = service.findViews(new Book(), pageRequest, BookCountMode.EXACT);
+        Mockito.when( repository.save(book)).thenReturn(book);
+        service.update(book);
+        service.findViews(new Book(), pageRequest, BookCountMode.EXACT);
+
+        Assertions.assertThat( cached.getContent()).extracting(BookView::getIsbn).containsExactly("123");
+        Assertions.assertThat( cached.getTotalElements()).isEqualTo(1);
+        Mockito.verify( repository, Mockito.times(2)).findViews(Mockito.any(Example.class), Mockito.eq(pageRequest), Mockito.eq(0));
+    }
+
     @Test
     @DisplayName("Deve obter um livro pelo isbn")
     public void getBookByIsbnTest(){
@@ -240,7 +390,164 @@ public class BookServiceTest {
          Mockito.verify( repository, Mockito.times(1)).findByIsbn(isbn);//verificando que o repository foi chamado apenas uma vez
 
     }
+    @Test
+    @DisplayName("Deve cadastrar em lote ignorando isbns repetidos no lote e ja cadastrados")
+    public void saveAllTest(){
+
+        Book novo = createValidBook();
+        Book repetido = createValidBook();
+        Book cadastrado = Book.builder().isbn("456").author("Fulano").title("Outro").build();
+
+        Mockito.when( repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(Arrays.asList("456"));
+        Mockito.when( repository.saveAll(Mockito.anyIterable())).then(invocation -> {
+            novo.setId(1l);//simulando o id gerado pela sequence
+            return invocation.getArgument(0);
+        });
+
+        List<BookBatchResult> results = service.saveAll(Arrays.asList(novo, repetido, cadastrado));
+
+        Assertions.assertThat( results).extracting(BookBatchResult::getStatus)
+                .containsExactly(BookBatchResult.Status.CREATED, BookBatchResult.Status.DUPLICATED, BookBatchResult.Status.DUPLICATED);
+        Assertions.assertThat( results.get(0).getId()).isEqualTo(1l);
+        Mockito.verify( repository, Mockito.times(1)).saveAll(Arrays.asList(novo));
+    }
+    @Test
+    @DisplayName("Deve marcar como falho só o livro cuja gravação um a um falhar por outro motivo")
+    public void saveAllFailedItemTest(){
+
+        Book novo = createValidBook();
+        Book invalido = Book.builder().isbn("456").author("Fulano").title("Outro").build();
+
+        Mockito.when( repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(Collections.emptyList());
+        Mockito.when( repository.saveAll(Mockito.anyIterable())).thenThrow(new DataIntegrityViolationException("duplicado"));
+        Mockito.when( repository.saveAndFlush(novo)).then(invocation -> {
+            novo.setId(1l);
+            return novo;
+        });
+        Mockito.when( repository.saveAndFlush(invalido)).thenThrow(new DataIntegrityViolationException("valor muito longo"));
+
+        List<BookBatchResult> results = service.saveAll(Arrays.asList(novo, invalido));
+
+        Assertions.assertThat( results).extracting(BookBatchResult::getStatus)
+                .containsExactly(BookBatchResult.Status.CREATED, BookBatchResult.Status.FAILED);
+        Assertions.assertThat( results.get(0).getId()).isEqualTo(1l);
+        Assertions.assertThat( results.get(1).getMessage()).isEqualTo("valor muito longo");
+    }
+    @Test
+    @DisplayName("Deve exportar os livros filtrados tirando cada um do contexto de persistencia")
+    public void exportTest(){
+
+        Book book = createValidBook();
+        Mockito.when( repository.streamAll(null, "%aventuras%", null, null)).thenReturn(Stream.of(book));
+
+        List<Book> exported = new ArrayList<>();
+        service.export(Book.builder().title("Aventuras").build(), exported::add);
+
+        Assertions.assertThat( exported).containsExactly(book);
+        Mockito.verify( entityManager, Mockito.times(1)).detach(book);
+    }
+    @Test
+    @DisplayName("Deve escapar % e _ do filtro da exportação, como o Example do find")
+    public void exportEscapeTest(){
+
+        Mockito.when( repository.streamAll(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(Stream.empty());
+
+        service.export(Book.builder().title("100%_Off").build(), book -> {});
+
+        Mockito.verify( repository).streamAll(null, "%100\\%\\_off%", null, null);
+    }
+    @Test
+    @DisplayName("Deve buscar a proxima pagina pelo cursor sem contar os registros")
+    public void findAfterTest(){
+
+        Book last = Book.builder().id(5l).title("A").build();
+        BookCursor cursor = BookCursor.first(Sort.by("title")).next(last);
+        List<Book> found = Arrays.asList(createValidBook(), createValidBook(), createValidBook());
+
+        Mockito.when( repository.findAfter(Mockito.any(Example.class), Mockito.eq("title"), Mockito.eq(Sort.Direction.ASC),
+                Mockito.eq("A"), Mockito.eq(5l), Mockito.eq(3))).thenReturn(found);//pede um a mais que o tamanho da pagina
+
+        Slice<Book> result = service.findAfter(new Book(), cursor, 2);
+
+        Assertions.assertThat( result.getContent()).hasSize(2);
+        Assertions.assertThat( result.hasNext()).isTrue();
+        Mockito.verify( repository, Mockito.never()).count(Mockito.any(Example.class));
+    }
+    @Test
+    @DisplayName("Deve buscar livros pelo indice de texto sem consultar o banco")
+    public void searchTest(){
+
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Page<Book> page = new PageImpl<Book>(Arrays.asList(createValidBook()), pageRequest, 1);
+        Mockito.when( searchIndex.search("aventuras", pageRequest)).thenReturn(page);
+
+        Page<Book> result = service.search("aventuras", pageRequest);
+
+        Assertions.assertThat( result).isSameAs(page);
+        Mockito.verifyNoInteractions(repository);
+    }
+    @Test
+    @DisplayName("Deve obter o livro do cache por id e por isbn e voltar ao banco depois de atualizado")
+    public void cachedLookupTest(){
 
+        Book book = Book.builder().id(1l).isbn("123").author("Fulano").title("As aventuras").build();
+        Mockito.when( repository.findById(1l)).thenReturn(Optional.of(book));
 
+        service.getById(1l);
+        Optional<Book> byId = service.getById(1l);
+        Optional<Book> byIsbn = service.getBookByIsbn("123");
 
+        Assertions.assertThat( byId.get().getTitle()).isEqualTo("As aventuras");
+        Assertions.assertThat( byIsbn.get().getId()).isEqualTo(1l);
+        Mockito.verify( repository, Mockito.times(1)).findById(1l);
+        Mockito.verify( repository, Mockito.never()).findByIsbn(Mockito.anyString());
+
+        Book updated = Book.builder().id(1l).isbn("123").author("Fulano").title("Memorias").build();
+        Mockito.when( repository.save(updated)).thenReturn(updated);
+        Mockito.when( repository.findById(1l)).thenReturn(Optional.of(updated));
+        service.update(updated);
+
+        Assertions.assertThat( service.getById(1l).get().getTitle()).isEqualTo("Memorias");
+        Mockito.verify( repository, Mockito.times(2)).findById(1l);
+    }
+    @Test
+    @DisplayName("Não deve consultar o banco por um isbn que não está no filtro")
+    public void unknownIsbnTest(){
+
+        Mockito.when( repository.streamIsbns()).thenReturn(Stream.of("123", "456"));
+        isbnFilter.load();
+
+        Optional<Book> book = service.getBookByIsbn("999");
+
+        Assertions.assertThat( book).isEmpty();
+        Mockito.verify( repository, Mockito.never()).findByIsbn(Mockito.anyString());
+    }
+    @Test
+    @DisplayName("Deve buscar varios livros por isbn em uma unica consulta")
+    public void getBooksByIsbnsTest(){
+
+        Mockito.when( repository.streamIsbns()).thenReturn(Stream.of("123", "456"));
+        isbnFilter.load();
+        Book book = Book.builder().id(1l).isbn("123").build();
+        Mockito.when( repository.findByIsbnIn(Arrays.asList("123", "456"))).thenReturn(Arrays.asList(book));
+
+        Map<String, Book> books = service.getBooksByIsbns(Arrays.asList("123", "999", "456", "123"));
+
+        Assertions.assertThat( books).containsOnlyKeys("123");
+        Mockito.verify( repository, Mockito.times(1)).findByIsbnIn(Mockito.anyCollection());
+    }
+    @Test
+    @DisplayName("Deve buscar varios livros por id passando pelo cache")
+    public void getByIdsTest(){
+
+        Book book = Book.builder().id(1l).isbn("123").build();
+        Mockito.when( repository.findAllById(Arrays.asList(1l, 2l))).thenReturn(Arrays.asList(book));
+
+        Map<Long, Book> first = service.getByIds(Arrays.asList(1l, 2l, 1l));
+        Map<Long, Book> second = service.getByIds(Arrays.asList(1l));
+
+        Assertions.assertThat( first).containsOnlyKeys(1l);
+        Assertions.assertThat( second.get(1l).getIsbn()).isEqualTo("123");
+        Mockito.verify( repository, Mockito.times(1)).findAllById(Mockito.anyIterable());
+    }
 }
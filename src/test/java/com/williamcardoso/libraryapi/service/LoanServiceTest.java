@@ -2,20 +2,42 @@ package com.williamcardoso.libraryapi.service;
 
 import com.williamcardoso.libraryapi.exception.BusinessEsception;
 import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Customer;
 import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.projection.LoanHistory;
+import com.williamcardoso.libraryapi.model.repository.LoanArchiveRepository;
 import com.williamcardoso.libraryapi.model.repository.LoanRepository;
 import com.williamcardoso.libraryapi.service.impl.LoanServiceImpl;
+import com.williamcardoso.libraryapi.service.impl.LoanWriter;
+import com.williamcardoso.libraryapi.service.index.AvailabilityIndex;
+import com.williamcardoso.libraryapi.service.index.CustomerLoanCounter;
+import com.williamcardoso.libraryapi.service.lock.BookLocks;
 import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -24,11 +46,30 @@ public class LoanServiceTest {
     @MockBean
      LoanRepository repository;
 
+    @MockBean
+     LoanArchiveRepository archiveRepository;
+
+    @MockBean
+     BookService bookService;
+
      LoanService service;
 
+     AvailabilityIndex availability;
+
+     BookLocks locks;
+
+     CustomerLoanCounter customerLoans;
+
+     Customer customer = Customer.builder().id(1l).name("Fulano").build();
+
      @BeforeEach
      public void setup(){
-         this.service = new LoanServiceImpl(repository);
+         this.availability = new AvailabilityIndex(repository, Mockito.mock(PlatformTransactionManager.class));
+         this.locks = new BookLocks(16, Duration.ofSeconds(1));
+         LoanWriter writer = new LoanWriter(repository, Mockito.mock(PlatformTransactionManager.class), availability,
+                 false, 100, Duration.ofMillis(5), 100, Duration.ofSeconds(30));//group commit desligado
+         this.customerLoans = new CustomerLoanCounter(repository, 2, 100, Duration.ofMinutes(10));
+         this.service = new LoanServiceImpl(repository, availability, locks, writer, archiveRepository, customerLoans, bookService);
      }
 
     @Test
@@ -36,7 +77,6 @@ public class LoanServiceTest {
     public void saveLoanTest(){
 
         Book book = Book.builder().id(1l).build();
-        String customer = "Fulano";
 
         Loan savingLoan =
                 Loan.builder()//livro para ser salvo
@@ -51,8 +91,7 @@ public class LoanServiceTest {
                 .loandate(LocalDate.now())
                 .build();
 
-        Mockito.when( repository.existsByBookAndNotReturned(book)).thenReturn(false); // retorno de um mock boolean é retornado false deixando explicito
-        Mockito.when( repository.save(savingLoan)).thenReturn( savedLoan );
+        Mockito.when( repository.saveAndFlush(savingLoan)).thenReturn( savedLoan );
 
         Loan loan = service.save( savingLoan );
 
@@ -68,7 +107,6 @@ public class LoanServiceTest {
     public void loanedBookSaveTest(){
 
         Book book = Book.builder().id(1l).build();
-        String customer = "Fulano";
 
         Loan savingLoan =
                 Loan.builder()//livro para ser salvo
@@ -77,15 +115,224 @@ public class LoanServiceTest {
                         .loandate(LocalDate.now())
                         .build();
 
-        Mockito.when( repository.existsByBookAndNotReturned(book)).thenReturn(true);
+        Mockito.when( repository.saveAndFlush(savingLoan)).thenThrow(new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", null, "UK_LOAN_ACTIVE_BOOK_INDEX_2")));//indice unico do emprestimo ativo
 
 
         Throwable exception = Assertions.catchThrowable(() -> service.save(savingLoan));//capturando exceção
 
         Assertions.assertThat( exception).isInstanceOf(BusinessEsception.class).hasMessage("Book already loaned");
 
-        Mockito.verify( repository, Mockito.never()).save(savingLoan);
+        Mockito.verify( repository, Mockito.never()).existsByBookAndNotReturned(book);//sem consulta antes do insert
+
+
+    }
+    @Test
+    @DisplayName("Deve recusar pelo bitmap o emprestimo de livro emprestado sem ir ao banco")
+    public void loanedBookFastPathTest(){
+
+        Mockito.when( repository.streamLoanedBookIds()).thenReturn(Stream.of(1l));
+        availability.load();
+        Loan savingLoan = Loan.builder().book(Book.builder().id(1l).build()).customer(customer).loandate(LocalDate.now()).build();
+
+        Throwable exception = Assertions.catchThrowable(() -> service.save(savingLoan));
+
+        Assertions.assertThat( exception).isInstanceOf(BusinessEsception.class).hasMessage("Book already loaned");
+        Mockito.verify( repository, Mockito.never()).saveAndFlush(savingLoan);
+        Assertions.assertThat( locks.hottest(10).get(0).getRejections()).isEqualTo(1);
+    }
+    @Test
+    @DisplayName("Deve consultar o banco em blocos enquanto o bitmap não foi carregado")
+    public void loanedAmongBeforeLoadTest(){
+
+        Mockito.when( repository.findLoanedBookIds(Arrays.asList(1l, 2l))).thenReturn(Arrays.asList(2l));
+
+        Assertions.assertThat( service.loanedAmong(Arrays.asList(1l, 2l, 1l))).containsExactly(2l);
+    }
+    @Test
+    @DisplayName("Deve devolver o livro e liberar o bitmap")
+    public void returnLoanTest(){
+
+        Mockito.when( repository.streamLoanedBookIds()).thenReturn(Stream.of(1l));
+        availability.load();
+        Loan loan = Loan.builder().id(1l).book(Book.builder().id(1l).build()).customer(customer).loandate(LocalDate.now())
+                .activeBookId(1l).returned(true).build();//lido do banco ainda ativo
+        Mockito.when( repository.countActiveByCustomer(1l)).thenReturn(1l);
+        customerLoans.active(1l);//cliente ja carregado no contador
+        Mockito.when( repository.saveAndFlush(loan)).thenReturn(loan);
+        Mockito.when( repository.findReturnedById(1l)).thenReturn(Optional.of(false));
+
+        Loan updated = service.update(loan);
+
+        Assertions.assertThat( updated.getReturned()).isTrue();
+        Assertions.assertThat( availability.isLoaned(1l)).isFalse();
+        Assertions.assertThat( customerLoans.active(1l)).isZero();
+    }
+    @Test
+    @DisplayName("Deve liberar a vaga do cliente uma vez só quando o emprestimo ja foi devolvido por outra requisição")
+    public void returnLoanTwiceTest(){
+
+        Loan loan = Loan.builder().id(1l).book(Book.builder().id(1l).build()).customer(customer).loandate(LocalDate.now())
+                .activeBookId(1l).returned(true).build();//lido do banco ainda ativo, antes da outra devolução
+        Mockito.when( repository.countActiveByCustomer(1l)).thenReturn(2l);
+        customerLoans.active(1l);
+        Mockito.when( repository.saveAndFlush(loan)).thenReturn(loan);
+        Mockito.when( repository.findReturnedById(1l)).thenReturn(Optional.of(false), Optional.of(true));
+
+        service.update(loan);
+        service.update(loan);
+
+        Assertions.assertThat( customerLoans.active(1l)).isEqualTo(1);
+    }
+    @Test
+    @DisplayName("Não deve liberar o livro ao devolver de novo um emprestimo antigo enquanto outro emprestimo do livro está ativo")
+    public void returnOldLoanAgainTest(){
+
+        Mockito.when( repository.streamLoanedBookIds()).thenReturn(Stream.of(1l));//emprestimo B ativo
+        availability.load();
+        Loan old = Loan.builder().id(1l).book(Book.builder().id(1l).build()).customer(customer).loandate(LocalDate.now())
+                .returned(true).build();//emprestimo A, ja devolvido
+        Mockito.when( repository.findReturnedById(1l)).thenReturn(Optional.of(true));
+
+        service.update(old);
+
+        Assertions.assertThat( availability.isLoaned(1l)).isTrue();
+        Mockito.verify( repository, Mockito.never()).saveAndFlush(Mockito.any(Loan.class));
+        Mockito.verify( repository, Mockito.never()).countActiveByCustomer(Mockito.anyLong());//contador do cliente intocado
+    }
+    @Test
+    @DisplayName("Deve recusar desfazer a devolução quando o cliente estiver no limite")
+    public void undoReturnOverLimitTest(){
+
+        Loan loan = Loan.builder().id(1l).book(Book.builder().id(1l).build()).customer(customer).loandate(LocalDate.now())
+                .returned(false).build();
+        Mockito.when( repository.findReturnedById(1l)).thenReturn(Optional.of(true));
+        Mockito.when( repository.countActiveByCustomer(1l)).thenReturn(2l);//limite do teste é 2
+
+        Throwable exception = Assertions.catchThrowable(() -> service.update(loan));
 
+        Assertions.assertThat( exception).isInstanceOf(BusinessEsception.class).hasMessage("Customer has reached the limit of 2 active loans");
+        Mockito.verify( repository, Mockito.never()).saveAndFlush(Mockito.any(Loan.class));
+        Assertions.assertThat( customerLoans.active(1l)).isEqualTo(2);
+    }
+    @Test
+    @DisplayName("Deve juntar o historico da tabela de emprestimos e do arquivo por data")
+    public void historyTest(){
+
+        Pageable top = PageRequest.of(0, 4);
+        Mockito.when( repository.findHistory("123", null, top))
+                .thenReturn(new PageImpl<>(Arrays.asList(history(5l, 1, false), history(4l, 3, false)), top, 2));
+        Mockito.when( archiveRepository.findHistory("123", null, top))
+                .thenReturn(new PageImpl<>(Arrays.asList(history(3l, 2, true), history(1l, 9, true), history(2l, 9, true)), top, 3));
+
+        Page<LoanHistory> page = service.history("123", null, PageRequest.of(1, 2));
+
+        Assertions.assertThat( page.getContent()).extracting(LoanHistory::getId).containsExactly(4l, 2l);
+        Assertions.assertThat( page.getTotalElements()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Deve recusar paginas do historico alem do limite de linhas")
+    public void deepHistoryPageTest(){
+
+        Throwable exception = Assertions.catchThrowable(() -> service.history("123", null, PageRequest.of(Integer.MAX_VALUE / 2, 10)));
+
+        Assertions.assertThat( exception).isInstanceOf(BusinessEsception.class);
+        Mockito.verify( repository, Mockito.never()).findHistory(Mockito.any(), Mockito.any(), Mockito.any(Pageable.class));
+    }
+
+    private LoanHistory history(Long id, int daysAgo, boolean archived) {
+        return LoanHistory.builder().id(id).loandate(LocalDate.now().minusDays(daysAgo)).archived(archived).build();
+    }
+    @Test
+    @DisplayName("Deve recusar o emprestimo quando o cliente atingir o limite de emprestimos ativos")
+    public void customerLimitTest(){
+
+        Mockito.when( repository.countActiveByCustomer(1l)).thenReturn(2l);
+        Loan savingLoan = Loan.builder().book(Book.builder().id(1l).build()).customer(customer).loandate(LocalDate.now()).build();
+
+        Throwable exception = Assertions.catchThrowable(() -> service.save(savingLoan));
+
+        Assertions.assertThat( exception).isInstanceOf(BusinessEsception.class).hasMessage("Customer has reached the limit of 2 active loans");
+        Mockito.verify( repository, Mockito.never()).saveAndFlush(savingLoan);
+    }
+    @Test
+    @DisplayName("Deve devolver a vaga do cliente quando o emprestimo não for gravado")
+    public void customerReleaseOnFailureTest(){
+
+        Loan savingLoan = Loan.builder().book(Book.builder().id(1l).build()).customer(customer).loandate(LocalDate.now()).build();
+        Mockito.when( repository.saveAndFlush(savingLoan)).thenThrow(new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", null, "UK_LOAN_ACTIVE_BOOK_INDEX_2")));
+
+        Assertions.catchThrowable(() -> service.save(savingLoan));
+
+        Assertions.assertThat( customerLoans.active(1l)).isZero();
+        Mockito.verify( repository, Mockito.times(1)).countActiveByCustomer(1l);//contado no banco uma unica vez
+    }
+    @Test
+    @DisplayName("Deve emprestar em lote os livros disponiveis e informar os que falharam")
+    public void bestEffortBatchTest(){
+
+        mockBatchBooks();
+
+        List<LoanBatchResult> results = service.saveAll(customer, Arrays.asList("1", "2", "3", "1"), LoanBatchMode.BEST_EFFORT);
+
+        Assertions.assertThat( results).extracting(LoanBatchResult::getStatus).containsExactly(LoanBatchResult.Status.CREATED,
+                LoanBatchResult.Status.LOANED, LoanBatchResult.Status.NOT_FOUND, LoanBatchResult.Status.DUPLICATED);
+        Assertions.assertThat( results.get(0).getId()).isEqualTo(10l);
+        Assertions.assertThat( availability.isLoaned(1l)).isTrue();
+        Assertions.assertThat( customerLoans.active(1l)).isEqualTo(1);
+        Mockito.verify( bookService, Mockito.times(1)).getBooksByIsbns(Mockito.anyCollection());
+    }
+    @Test
+    @DisplayName("Deve informar a falha do item e seguir com os demais quando a regravação um a um falhar")
+    public void bestEffortRetryFailureTest(){
+
+        Map<String, Book> books = new HashMap<>();
+        books.put("1", Book.builder().id(1l).isbn("1").build());
+        books.put("3", Book.builder().id(3l).isbn("3").build());
+        Mockito.when( bookService.getBooksByIsbns(Mockito.anyCollection())).thenReturn(books);
+        Mockito.when( repository.saveAll(Mockito.anyIterable())).thenThrow(new DataIntegrityViolationException("lote"));
+        Mockito.when( repository.saveAndFlush(Mockito.any(Loan.class))).thenAnswer(invocation -> {
+            Loan loan = invocation.getArgument(0);
+            if ( loan.getBook().getId() == 1l){
+                throw new DataIntegrityViolationException("outra constraint");
+            }
+            loan.setId(13l);
+            return loan;
+        });
+
+        List<LoanBatchResult> results = service.saveAll(customer, Arrays.asList("1", "3"), LoanBatchMode.BEST_EFFORT);
+
+        Assertions.assertThat( results).extracting(LoanBatchResult::getStatus)
+                .containsExactly(LoanBatchResult.Status.FAILED, LoanBatchResult.Status.CREATED);
+        Assertions.assertThat( results.get(1).getId()).isEqualTo(13l);
+        Assertions.assertThat( customerLoans.active(1l)).isEqualTo(1);//a vaga do item que falhou foi devolvida
+    }
+    @Test
+    @DisplayName("Não deve gravar nenhum emprestimo do lote quando algum livro falhar")
+    public void allOrNothingBatchTest(){
+
+        mockBatchBooks();
+
+        List<LoanBatchResult> results = service.saveAll(customer, Arrays.asList("1", "2"), LoanBatchMode.ALL_OR_NOTHING);
+
+        Assertions.assertThat( results).extracting(LoanBatchResult::getStatus)
+                .containsExactly(LoanBatchResult.Status.ABORTED, LoanBatchResult.Status.LOANED);
+        Assertions.assertThat( customerLoans.active(1l)).isZero();
+        Mockito.verify( repository, Mockito.never()).saveAll(Mockito.anyIterable());
+    }
 
+    private void mockBatchBooks() {
+        Map<String, Book> books = new HashMap<>();
+        books.put("1", Book.builder().id(1l).isbn("1").build());
+        books.put("2", Book.builder().id(2l).isbn("2").build());
+        Mockito.when( bookService.getBooksByIsbns(Mockito.anyCollection())).thenReturn(books);
+        Mockito.when( repository.findLoanedBookIds(Mockito.anyCollection())).thenReturn(Arrays.asList(2l));
+        Mockito.when( repository.saveAll(Mockito.anyIterable())).thenAnswer(invocation -> {
+            List<Loan> loans = new ArrayList<>(invocation.getArgument(0));
+            loans.forEach(loan -> loan.setId(9l + loan.getBook().getId()));
+            return loans;
+        });
     }
 }
@@ -0,0 +1,171 @@
+package com.williamcardoso.libraryapi.service;
+
+import com.williamcardoso.libraryapi.exception.BusinessEsception;
+import com.williamcardoso.libraryapi.exception.ServiceBusyException;
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.entity.Customer;
+import com.williamcardoso.libraryapi.model.entity.Loan;
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import com.williamcardoso.libraryapi.service.impl.LoanWriter;
+import com.williamcardoso.libraryapi.service.index.AvailabilityIndex;
+import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class LoanWriterTest {
+
+    LoanRepository repository;
+
+    AvailabilityIndex availability;
+
+    LoanWriter writer;
+
+    @BeforeEach
+    public void setUp(){
+        this.repository = Mockito.mock(LoanRepository.class);
+        this.availability = new AvailabilityIndex(repository, Mockito.mock(PlatformTransactionManager.class));
+        this.writer = new LoanWriter(repository, Mockito.mock(PlatformTransactionManager.class), availability,
+                true, 10, Duration.ofMillis(50), 2, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException{
+        writer.stop();
+    }
+
+    @Test
+    @DisplayName("Deve gravar os emprestimos pendentes num unico lote")
+    public void groupCommitTest() throws Exception{
+
+        writer.start();
+        CompletableFuture<Loan> first = writer.submit(createLoan(1l));
+        CompletableFuture<Loan> second = writer.submit(createLoan(2l));
+
+        Assertions.assertThat( first.get(1, TimeUnit.SECONDS).getBook().getId()).isEqualTo(1l);
+        Assertions.assertThat( second.get(1, TimeUnit.SECONDS).getBook().getId()).isEqualTo(2l);
+        Mockito.verify( repository, Mockito.times(1)).saveAll(Mockito.<List<Loan>>argThat(loans -> loans.size() == 2));
+        Assertions.assertThat( availability.isLoaned(1l)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve recusar o pedido quando a fila estiver cheia ou o livro ja estiver na fila")
+    public void backpressureTest() throws Exception{
+
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when( repository.saveAll(Mockito.anyIterable())).then(invocation -> {
+            writing.countDown();
+            release.await(1, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        });
+        writer.start();
+        writer.submit(createLoan(1l));
+        writing.await(1, TimeUnit.SECONDS);//primeiro lote preso na gravação
+        writer.submit(createLoan(2l));
+        writer.submit(createLoan(3l));
+
+        CompletableFuture<Loan> sameBook = writer.submit(createLoan(2l));
+        Throwable busy = Assertions.catchThrowable(() -> writer.submit(createLoan(4l)));
+        release.countDown();
+
+        Assertions.assertThat( busy).isInstanceOf(ServiceBusyException.class);
+        Assertions.assertThatThrownBy(sameBook::get).hasCauseInstanceOf(BusinessEsception.class);
+    }
+
+    @Test
+    @DisplayName("Deve gravar a fila ao desligar e recusar novos pedidos")
+    public void shutdownFlushTest() throws Exception{
+
+        writer.start();
+        CompletableFuture<Loan> pending = writer.submit(createLoan(1l));
+        writer.stop();
+
+        Assertions.assertThat( pending).isCompleted();
+        Assertions.assertThat( Assertions.catchThrowable(() -> writer.submit(createLoan(2l)))).isInstanceOf(ServiceBusyException.class);
+    }
+
+    @Test
+    @DisplayName("Deve falhar os pedidos que ficaram na fila quando o desligamento passar do prazo")
+    public void shutdownTimeoutTest() throws Exception{
+
+        LoanWriter slow = new LoanWriter(repository, Mockito.mock(PlatformTransactionManager.class), availability,
+                true, 1, Duration.ofMillis(50), 2, Duration.ofMillis(100));
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when( repository.saveAll(Mockito.anyIterable())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);//primeiro lote preso no banco
+            return invocation.getArgument(0);
+        });
+
+        slow.start();
+        CompletableFuture<Loan> first = slow.submit(createLoan(1l));
+        writing.await(1, TimeUnit.SECONDS);
+        CompletableFuture<Loan> queued = slow.submit(createLoan(2l));
+        slow.stop();
+
+        Assertions.assertThatThrownBy(() -> queued.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasCauseInstanceOf(ServiceBusyException.class);
+        release.countDown();
+        Assertions.assertThat( first.get(1, TimeUnit.SECONDS).getBook().getId()).isEqualTo(1l);
+    }
+
+    @Test
+    @DisplayName("Deve falhar o lote em montagem quando a thread do writer for interrompida")
+    public void interruptedBatchTest() throws Exception{
+
+        LoanWriter slow = new LoanWriter(repository, Mockito.mock(PlatformTransactionManager.class), availability,
+                true, 10, Duration.ofSeconds(5), 2, Duration.ofSeconds(1));//lote esperando mais pedidos por 5s
+        slow.start();
+        CompletableFuture<Loan> pending = slow.submit(createLoan(1l));
+        while ( slow.pending() > 0){
+            Thread.sleep(1);//até a thread retirar o pedido da fila
+        }
+        Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("loan-writer"))
+                .forEach(Thread::interrupt);
+
+        Assertions.assertThatThrownBy(() -> pending.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasCauseInstanceOf(ServiceBusyException.class);
+        Assertions.assertThat( slow.submit(createLoan(1l))).isNotCompletedExceptionally();//o livro saiu dos pendentes, não é recusado como ja emprestado
+        slow.stop();
+    }
+
+    @Test
+    @DisplayName("Deve refazer o lote um a um quando um livro ja estiver emprestado no banco")
+    public void constraintViolationTest() throws Exception{
+
+        Loan loaned = createLoan(1l);
+        Loan available = createLoan(2l);
+        Mockito.when( repository.saveAll(Mockito.anyIterable())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+        Mockito.when( repository.saveAndFlush(loaned)).thenThrow(new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", null, "UK_LOAN_ACTIVE_BOOK_INDEX_2")));
+        Mockito.when( repository.saveAndFlush(available)).thenReturn(available);
+
+        writer.start();
+        List<CompletableFuture<Loan>> futures = Arrays.asList(writer.submit(loaned), writer.submit(available));
+
+        Assertions.assertThatThrownBy(() -> futures.get(0).get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasCauseInstanceOf(BusinessEsception.class);
+        Assertions.assertThat( futures.get(1).get(1, TimeUnit.SECONDS)).isSameAs(available);
+    }
+
+    private Loan createLoan(Long bookId) {
+        return Loan.builder().book(Book.builder().id(bookId).build()).customer(Customer.builder().id(1l).name("Fulano").build()).loandate(LocalDate.now()).build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.williamcardoso.libraryapi.service.cache;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+
+public class BookCacheTest {
+
+    BookCache cache;
+
+    @BeforeEach
+    public void setUp(){
+        this.cache = new BookCache(100, Duration.ofMinutes(10));
+    }
+
+    @Test
+    @DisplayName("Deve encontrar pelo isbn o livro carregado pelo id e devolver copias")
+    public void dualIndexTest(){
+
+        cache.getById(1l, id -> Optional.of(Book.builder().id(id).isbn("123").title("As aventuras").build()));
+
+        Book byIsbn = cache.getByIsbn("123", () -> Optional.empty()).get();
+        byIsbn.setTitle("Alterado");
+
+        Assertions.assertThat( cache.getById(1l, id -> Optional.empty()).get().getTitle()).isEqualTo("As aventuras");
+        Assertions.assertThat( cache.stats().getHits()).isEqualTo(2);
+        Assertions.assertThat( cache.stats().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve remover as duas chaves ao alterar o isbn do livro")
+    public void invalidateTest(){
+
+        cache.getByIsbn("123", () -> Optional.of(Book.builder().id(1l).isbn("123").build()));
+        cache.saved(Book.builder().id(1l).isbn("456").build());
+
+        Assertions.assertThat( cache.getByIsbn("123", () -> Optional.empty())).isEmpty();
+        Assertions.assertThat( cache.getById(1l, id -> Optional.of(Book.builder().id(id).isbn("456").build())).get().getIsbn())
+                .isEqualTo("456");
+        Assertions.assertThat( cache.stats().getMisses()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Não deve guardar o livro lido pelo isbn quando foi alterado durante a carga")
+    public void invalidatedDuringIsbnLoadTest(){
+
+        Optional<Book> loaded = cache.getByIsbn("123", () -> {
+            Optional<Book> old = Optional.of(Book.builder().id(1l).isbn("123").title("Antigo").build());
+            cache.saved(Book.builder().id(1l).isbn("123").title("Novo").build());//update concorrente entre a leitura e o put
+            return old;
+        });
+
+        Assertions.assertThat( loaded.get().getTitle()).isEqualTo("Antigo");
+        Assertions.assertThat( cache.getIfPresent(1l)).isEmpty();
+        Assertions.assertThat( cache.getByIsbn("123", () -> Optional.of(Book.builder().id(1l).isbn("123").title("Novo").build())).get().getTitle())
+                .isEqualTo("Novo");
+    }
+
+    @Test
+    @DisplayName("Não deve guardar os livros da carga em lote quando algum foi alterado durante a carga")
+    public void invalidatedDuringBulkLoadTest(){
+
+        Map<Long, Book> byId = cache.getAllById(Arrays.asList(1l, 2l), missing -> {
+            cache.deleted(2l);//delete concorrente durante o "in"
+            return Arrays.asList(Book.builder().id(1l).isbn("1").build(), Book.builder().id(2l).isbn("2").build());
+        });
+        Map<String, Book> byIsbn = cache.getAllByIsbn(Arrays.asList("3"), missing -> {
+            cache.saved(Book.builder().id(3l).isbn("3").title("Novo").build());
+            return Arrays.asList(Book.builder().id(3l).isbn("3").title("Antigo").build());
+        });
+
+        Assertions.assertThat( byId).containsOnlyKeys(1l, 2l);
+        Assertions.assertThat( byIsbn).containsOnlyKeys("3");
+        Assertions.assertThat( cache.getIfPresent(2l)).isEmpty();
+        Assertions.assertThat( cache.getIfPresent(3l)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve manter apenas o tamanho maximo de livros")
+    public void evictionTest(){
+
+        BookCache small = new BookCache(10, Duration.ofMinutes(10));
+        for ( long i = 1; i <= 100; i++){
+            small.getById(i, id -> Optional.of(Book.builder().id(id).isbn(String.valueOf(id)).build()));
+        }
+        small.getById(1l, id -> Optional.empty());//as remoções do caffeine são aplicadas na manutenção das leituras
+
+        Assertions.assertThat( small.stats().getSize()).isLessThanOrEqualTo(10);
+        Assertions.assertThat( small.stats().getEvictions()).isGreaterThanOrEqualTo(90);
+    }
+
+    @Test
+    @DisplayName("Deve buscar varios livros com uma unica carga para os que não estão no cache")
+    public void getAllTest(){
+
+        cache.getById(1l, id -> Optional.of(Book.builder().id(id).isbn("123").build()));
+        List<List<Long>> loads = new ArrayList<>();
+
+        Map<Long, Book> byId = cache.getAllById(Arrays.asList(1l, 2l, 3l), missing -> {
+            loads.add(missing);
+            return Collections.singletonList(Book.builder().id(2l).isbn("456").build());
+        });
+        Map<String, Book> byIsbn = cache.getAllByIsbn(Arrays.asList("123", "456"), missing -> Collections.emptyList());
+
+        Assertions.assertThat( byId).containsOnlyKeys(1l, 2l);
+        Assertions.assertThat( loads).containsExactly(Arrays.asList(2l, 3l));
+        Assertions.assertThat( byIsbn).containsOnlyKeys("123", "456");
+    }
+}
@@ -0,0 +1,61 @@
+package com.williamcardoso.libraryapi.service.cache;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.repository.BookRepository;
+import com.williamcardoso.libraryapi.service.BookCountMode;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BookCountCacheTest {
+
+    BookRepository repository;
+    BookCountCache cache;
+    AtomicInteger queries;
+
+    @BeforeEach
+    public void setUp(){
+        this.repository = Mockito.mock(BookRepository.class);
+        PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Mockito.when( transactionManager.getTransaction(Mockito.any())).thenReturn(Mockito.mock(TransactionStatus.class));
+        this.cache = new BookCountCache(repository, transactionManager, 100, Duration.ofMinutes(1));
+        this.queries = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Deve manter o total sem filtro a cada criação e remoção, sem consultar")
+    public void unfilteredTotalTest(){
+
+        Mockito.when( repository.count()).thenReturn(10l);
+        cache.load();
+        cache.created(Book.builder().id(11l).build());
+        cache.created(Book.builder().id(12l).build());
+        cache.deleted(1l);
+
+        Assertions.assertThat( cache.count(new Book(), BookCountMode.EXACT, this::query)).isEqualTo(11);
+        Assertions.assertThat( queries.get()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Deve guardar o total por filtro somente no modo CACHED, ignorando maiusculas")
+    public void filteredTotalTest(){
+
+        cache.count(Book.builder().author("Fulano").build(), BookCountMode.CACHED, this::query);
+        long cached = cache.count(Book.builder().author("fulano").build(), BookCountMode.CACHED, this::query);
+        cache.count(Book.builder().author("fulano").build(), BookCountMode.EXACT, this::query);
+
+        Assertions.assertThat( cached).isEqualTo(1);
+        Assertions.assertThat( queries.get()).isEqualTo(2);
+    }
+
+    private long query() {
+        return queries.incrementAndGet();
+    }
+}
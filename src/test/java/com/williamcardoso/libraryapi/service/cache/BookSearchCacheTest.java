@@ -0,0 +1,82 @@
+package com.williamcardoso.libraryapi.service.cache;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.service.BookCountMode;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class BookSearchCacheTest {
+
+    BookSearchCache cache;
+    Map<Long, Book> books;
+    AtomicInteger queries;
+
+    @BeforeEach
+    public void setUp(){
+        this.cache = new BookSearchCache(100, Duration.ofMinutes(1));
+        this.books = new HashMap<>();
+        books.put(1l, Book.builder().id(1l).title("As aventuras").build());
+        books.put(2l, Book.builder().id(2l).title("Aventureiros").build());
+        this.queries = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Deve servir a mesma pagina pelos ids guardados, ignorando maiusculas no filtro")
+    public void hitTest(){
+
+        find("Avent");
+        Page<Book> page = find("aVENT");
+
+        Assertions.assertThat( queries.get()).isEqualTo(1);
+        Assertions.assertThat( page.getContent()).extracting(Book::getId).containsExactly(1l, 2l);
+        Assertions.assertThat( page.getTotalElements()).isEqualTo(2);
+        Assertions.assertThat( cache.stats().getHits()).isEqualTo(1);
+        Assertions.assertThat( cache.stats().getHitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("Deve consultar de novo depois de uma alteração no cadastro")
+    public void generationTest(){
+
+        find("avent");
+        cache.saved(Book.builder().id(3l).build());
+        find("avent");
+
+        Assertions.assertThat( queries.get()).isEqualTo(2);
+        Assertions.assertThat( cache.stats().getStale()).isEqualTo(1);
+        Assertions.assertThat( cache.stats().getGeneration()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve consultar de novo quando algum livro guardado não existe mais")
+    public void missingBookTest(){
+
+        find("avent");
+        books.remove(2l);
+        Page<Book> page = find("avent");
+
+        Assertions.assertThat( queries.get()).isEqualTo(2);
+        Assertions.assertThat( page.getContent()).extracting(Book::getId).containsExactly(1l);
+    }
+
+    private Page<Book> find(String title) {
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Function<List<Long>, List<Book>> resolver = ids -> ids.stream().map(books::get).filter(Objects::nonNull).collect(Collectors.toList());
+        return cache.get(Book.builder().title(title).build(), pageRequest, BookCountMode.EXACT, resolver, () -> {
+            queries.incrementAndGet();
+            List<Book> content = new ArrayList<>(new TreeMap<>(books).values());
+            return new PageImpl<>(content, pageRequest, content.size());
+        }, Book::getId);
+    }
+}
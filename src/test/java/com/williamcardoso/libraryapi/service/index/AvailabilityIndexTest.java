@@ -0,0 +1,68 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+public class AvailabilityIndexTest {
+
+    LoanRepository repository;
+
+    AvailabilityIndex index;
+
+    @BeforeEach
+    public void setUp(){
+        this.repository = Mockito.mock(LoanRepository.class);
+        this.index = new AvailabilityIndex(repository, Mockito.mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    @DisplayName("Deve carregar os livros emprestados e acompanhar emprestimos e devoluções")
+    public void loanAndReturnTest(){
+
+        Mockito.when( repository.streamLoanedBookIds()).thenReturn(Stream.of(1l, 2l));
+        index.load();
+        index.loaned(3l);
+        index.returned(1l);
+
+        Assertions.assertThat( index.loanedAmong(Arrays.asList(1l, 2l, 3l, 4l))).containsExactlyInAnyOrder(2l, 3l);
+        Assertions.assertThat( index.stats().getLoanedBooks()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve contar e corrigir as diferenças com o banco na verificação")
+    public void checkTest(){
+
+        Mockito.when( repository.streamLoanedBookIds()).thenReturn(Stream.of(1l, 2l));
+        index.load();
+        Mockito.when( repository.streamLoanedBookIds()).thenReturn(Stream.of(2l, 5l));//1 devolvido e 5 emprestado fora do service
+
+        index.check();
+
+        Assertions.assertThat( index.isLoaned(1l)).isFalse();
+        Assertions.assertThat( index.isLoaned(5l)).isTrue();
+        Assertions.assertThat( index.stats().getMismatches()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve manter as alterações feitas durante a reconstrução")
+    public void changesDuringRebuildTest(){
+
+        Mockito.when( repository.streamLoanedBookIds()).thenAnswer(invocation -> {
+            index.returned(1l);//devolvido depois da leitura do emprestimo
+            return Stream.of(1l);
+        });
+
+        long drift = index.rebuild();
+
+        Assertions.assertThat( drift).isEqualTo(0);
+        Assertions.assertThat( index.isLoaned(1l)).isFalse();
+    }
+}
@@ -0,0 +1,65 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+public class BookSearchIndexTest {
+
+    BookSearchIndex index;
+
+    @BeforeEach
+    public void setUp(){
+        this.index = new BookSearchIndex(null, null, null);//sem carga inicial, apenas o indice em memória
+        index.saved(Book.builder().id(1l).title("As Aventuras de Érico").author("Fulano").isbn("1").build());
+        index.saved(Book.builder().id(2l).title("Contos").author("Érico Verissimo").isbn("2").build());
+        index.saved(Book.builder().id(3l).title("Aventureiros").author("Ciclano").isbn("3").build());
+    }
+
+    @Test
+    @DisplayName("Deve ordenar pela relevancia, titulo antes de autor, ignorando acentos")
+    public void rankingTest(){
+
+        Page<Book> result = index.search("erico", PageRequest.of(0, 10));
+
+        Assertions.assertThat( result.getTotalElements()).isEqualTo(2);
+        Assertions.assertThat( result.getContent()).extracting(Book::getId).containsExactly(1l, 2l);
+    }
+
+    @Test
+    @DisplayName("Deve encontrar pelo começo das palavras com peso menor que a palavra inteira")
+    public void prefixTest(){
+
+        Page<Book> result = index.search("aventur", PageRequest.of(0, 10));
+
+        Assertions.assertThat( result.getContent()).extracting(Book::getId).containsExactlyInAnyOrder(1l, 3l);
+    }
+
+    @Test
+    @DisplayName("Deve reindexar o livro atualizado e remover o livro deletado")
+    public void updateAndDeleteTest(){
+
+        index.saved(Book.builder().id(1l).title("Memorias").author("Fulano").isbn("1").build());
+        index.deleted(2l);
+
+        Assertions.assertThat( index.search("erico", PageRequest.of(0, 10)).getContent()).isEmpty();
+        Assertions.assertThat( index.search("memorias", PageRequest.of(0, 10)).getContent()).extracting(Book::getId).containsExactly(1l);
+        Assertions.assertThat( index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve reindexar somente os campos alterados pelo patch")
+    public void patchTest(){
+
+        index.patched(Book.builder().id(1l).title("Memorias").build());
+
+        Assertions.assertThat( index.search("memorias", PageRequest.of(0, 10)).getContent()).extracting(Book::getId).containsExactly(1l);
+        Assertions.assertThat( index.search("memorias", PageRequest.of(0, 10)).getContent().get(0).getIsbn()).isEqualTo("1");
+        Assertions.assertThat( index.search("erico", PageRequest.of(0, 10)).getContent()).extracting(Book::getId).containsExactly(2l);
+        Assertions.assertThat( index.search("fulano", PageRequest.of(0, 10)).getContent()).extracting(Book::getId).containsExactly(1l);//autor mantido
+    }
+}
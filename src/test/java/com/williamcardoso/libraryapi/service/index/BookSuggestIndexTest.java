@@ -0,0 +1,83 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.service.BookSuggestion;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class BookSuggestIndexTest {
+
+    BookSuggestIndex index;
+
+    @BeforeEach
+    public void setUp(){
+        this.index = new BookSuggestIndex(null, null, null, null, null);//sem carga inicial, apenas o indice em memória
+        index.saved(Book.builder().id(1l).title("As Aventuras de Érico").author("Fulano").isbn("1").build());
+        index.saved(Book.builder().id(2l).title("Contos").author("Érico Verissimo").isbn("2").build());
+        index.saved(Book.builder().id(3l).title("Aventureiros").author("Ciclano").isbn("3").build());
+        Map<Long, Long> loans = new HashMap<>();
+        loans.put(2l, 5l);
+        loans.put(3l, 9l);
+        index.setLoans(loans);
+    }
+
+    @Test
+    @DisplayName("Deve sugerir pelo começo das palavras, os mais emprestados primeiro")
+    public void rankingTest(){
+
+        Assertions.assertThat( index.suggest("Avent", 10)).extracting(BookSuggestion::getId).containsExactly(3l, 1l);
+        Assertions.assertThat( index.suggest("eri", 10)).extracting(BookSuggestion::getLoans).containsExactly(5l, 0l);
+    }
+
+    @Test
+    @DisplayName("Deve exigir todas as palavras digitadas e limitar a quantidade")
+    public void termsAndLimitTest(){
+
+        Assertions.assertThat( index.suggest("aventuras er", 10)).extracting(BookSuggestion::getId).containsExactly(1l);
+        Assertions.assertThat( index.suggest("aventur", 1)).extracting(BookSuggestion::getId).containsExactly(3l);
+        Assertions.assertThat( index.suggest("a", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve refletir o livro atualizado e o livro deletado")
+    public void updateAndDeleteTest(){
+
+        index.saved(Book.builder().id(1l).title("Memorias").author("Fulano").isbn("1").build());
+        index.deleted(2l);
+
+        Assertions.assertThat( index.suggest("eri", 10)).isEmpty();
+        Assertions.assertThat( index.suggest("memo", 10)).extracting(BookSuggestion::getId).containsExactly(1l);
+        Assertions.assertThat( index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve refletir somente os campos alterados pelo patch, mantendo os emprestimos")
+    public void patchTest(){
+
+        index.patched(Book.builder().id(2l).title("Memorias").build());
+
+        Assertions.assertThat( index.suggest("memo", 10)).extracting(BookSuggestion::getLoans).containsExactly(5l);
+        Assertions.assertThat( index.suggest("memo", 10)).extracting(BookSuggestion::getAuthor).containsExactly("Érico Verissimo");
+    }
+
+    @Test
+    @DisplayName("Deve achar pela faixa do prefixo o livro raro que não está entre os mais emprestados")
+    public void rarePrefixTest(){
+
+        Map<Long, Long> loans = new HashMap<>();
+        for ( long id = 10; id < 2510; id++){
+            index.saved(Book.builder().id(id).title("Comum " + id).author("Fulano").isbn(String.valueOf(id)).build());
+            loans.put(id, 1l);
+        }
+        index.saved(Book.builder().id(5000l).title("Raridade").author("Fulano").isbn("5000").build());
+        index.setLoans(loans);
+
+        Assertions.assertThat( index.suggest("rari", 10)).extracting(BookSuggestion::getId).containsExactly(5000l);
+        Assertions.assertThat( index.suggest("comum", 3)).extracting(BookSuggestion::getId).containsExactly(10l, 100l, 1000l);
+    }
+}
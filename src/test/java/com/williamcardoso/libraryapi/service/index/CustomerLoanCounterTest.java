@@ -0,0 +1,77 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import com.williamcardoso.libraryapi.model.projection.CustomerLoanCount;
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class CustomerLoanCounterTest {
+
+    LoanRepository repository;
+
+    CustomerLoanCounter counter;
+
+    @BeforeEach
+    public void setUp(){
+        this.repository = Mockito.mock(LoanRepository.class);
+        this.counter = new CustomerLoanCounter(repository, 2, 100, Duration.ofMinutes(10));
+    }
+
+    @Test
+    @DisplayName("Deve contar no banco uma vez e conferir o limite em memória")
+    public void limitTest(){
+
+        Mockito.when( repository.countActiveByCustomer(1l)).thenReturn(1l);
+
+        Assertions.assertThat( counter.tryAcquire(1l)).isTrue();
+        Assertions.assertThat( counter.tryAcquire(1l)).isFalse();
+        counter.release(1l);
+        Assertions.assertThat( counter.tryAcquire(1l)).isTrue();
+        Mockito.verify( repository, Mockito.times(1)).countActiveByCustomer(1l);
+    }
+
+    @Test
+    @DisplayName("Deve corrigir pela conferencia a vaga perdida de um cliente")
+    public void checkTest(){
+
+        Mockito.when( repository.countActiveByCustomer(1l)).thenReturn(2l);
+        Mockito.when( repository.countActiveByCustomer(2l)).thenReturn(1l);
+        Assertions.assertThat( counter.tryAcquire(1l)).isFalse();//devolução feita em outra instancia, a vaga não voltou
+        counter.active(2l);
+        Mockito.when( repository.countActiveByCustomers(Mockito.anyCollection()))
+                .thenReturn(Collections.singletonList(CustomerLoanCount.builder().customerId(2l).loans(1l).build()));
+
+        Assertions.assertThat( counter.check()).isEqualTo(1);
+        Assertions.assertThat( counter.tryAcquire(1l)).isTrue();
+        Assertions.assertThat( counter.active(2l)).isEqualTo(1);
+        Mockito.verify( repository).countActiveByCustomers(Mockito.argThat(ids -> ids.containsAll(Arrays.asList(1l, 2l))));
+    }
+
+    @Test
+    @DisplayName("Deve contar no banco de novo depois que a entrada expirar")
+    public void expireTest() throws InterruptedException{
+
+        CustomerLoanCounter expiring = new CustomerLoanCounter(repository, 2, 100, Duration.ofMillis(1));
+        Mockito.when( repository.countActiveByCustomer(1l)).thenReturn(2l, 0l);
+
+        Assertions.assertThat( expiring.tryAcquire(1l)).isFalse();
+        Thread.sleep(10);
+        Assertions.assertThat( expiring.tryAcquire(1l)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Não deve contar no banco a devolução de cliente ainda não carregado")
+    public void releaseUnknownTest(){
+
+        counter.release(1l);
+
+        Mockito.verifyNoInteractions(repository);
+    }
+}
@@ -0,0 +1,61 @@
+package com.williamcardoso.libraryapi.service.index;
+
+import com.williamcardoso.libraryapi.model.entity.Book;
+import com.williamcardoso.libraryapi.model.repository.BookRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.stream.LongStream;
+
+public class IsbnFilterTest {
+
+    BookRepository repository;
+
+    IsbnFilter filter;
+
+    @BeforeEach
+    public void setUp(){
+        this.repository = Mockito.mock(BookRepository.class);
+        this.filter = new IsbnFilter(repository, Mockito.mock(PlatformTransactionManager.class), 10000, 0.01);
+    }
+
+    @Test
+    @DisplayName("Deve considerar qualquer isbn antes da carga inicial")
+    public void notLoadedTest(){
+
+        Assertions.assertThat( filter.mightContain("123")).isTrue();
+        Assertions.assertThat( filter.stats().isLoaded()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve conter todos os isbns carregados e salvos com falsos positivos perto da taxa configurada")
+    public void falsePositiveRateTest(){
+
+        Mockito.when( repository.streamIsbns()).thenReturn(LongStream.range(0, 5000).mapToObj(i -> "isbn-" + i));
+        filter.load();
+        LongStream.range(5000, 10000).forEach(i -> filter.saved(Book.builder().id(i).isbn("isbn-" + i).build()));
+
+        Assertions.assertThat( LongStream.range(0, 10000).allMatch(i -> filter.mightContain("isbn-" + i))).isTrue();
+        long falsePositives = LongStream.range(0, 100000).filter(i -> filter.mightContain("outro-" + i)).count();
+        Assertions.assertThat( falsePositives).isLessThan(2000);//2%, o dobro da taxa configurada
+        Assertions.assertThat( filter.stats().getInsertions()).isEqualTo(10000);
+        Assertions.assertThat( filter.stats().getMemoryBytes()).isGreaterThan(0);
+    }
+
+    @Test
+    @DisplayName("Deve esquecer os isbns deletados ao reconstruir o filtro")
+    public void rebuildTest(){
+
+        Mockito.when( repository.streamIsbns()).thenReturn(LongStream.range(0, 100).mapToObj(i -> "isbn-" + i));
+        filter.load();
+        Mockito.when( repository.streamIsbns()).thenReturn(LongStream.range(0, 50).mapToObj(i -> "isbn-" + i));
+        filter.rebuild();
+
+        long remaining = LongStream.range(50, 100).filter(i -> filter.mightContain("isbn-" + i)).count();
+        Assertions.assertThat( remaining).isLessThan(5);
+    }
+}
@@ -0,0 +1,82 @@
+package com.williamcardoso.libraryapi.service.job;
+
+import com.williamcardoso.libraryapi.model.repository.LoanArchiveRepository;
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class LoanArchiverTest {
+
+    static final LocalDate TODAY = LocalDate.of(2020, 3, 1);
+
+    LoanRepository loanRepository;
+
+    LoanArchiveRepository archiveRepository;
+
+    LoanArchiver archiver;
+
+    @BeforeEach
+    public void setup(){
+        loanRepository = Mockito.mock(LoanRepository.class);
+        archiveRepository = Mockito.mock(LoanArchiveRepository.class);
+        archiver = new LoanArchiver(loanRepository, archiveRepository, Mockito.mock(PlatformTransactionManager.class),
+                Duration.ofDays(30), 2, Duration.ZERO);
+    }
+
+    @Test
+    @DisplayName("Deve arquivar em lotes até não sobrar emprestimo antigo")
+    public void archiveTest(){
+
+        Mockito.when( loanRepository.findReturnedBefore(Mockito.eq(TODAY.minusDays(30)), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(1l, 2l), Collections.singletonList(3l));
+        Mockito.when( archiveRepository.archive(Mockito.anyCollection(), Mockito.eq(TODAY))).thenReturn(2, 1);
+        Mockito.when( loanRepository.deleteReturned(Mockito.anyCollection())).thenReturn(2, 1);
+
+        long moved = archiver.archive(TODAY);
+
+        Assertions.assertThat( moved).isEqualTo(3);
+        Assertions.assertThat( archiver.archived()).isEqualTo(3);
+        Mockito.verify( loanRepository).deleteReturned(Arrays.asList(1l, 2l));
+        Mockito.verify( loanRepository).deleteReturned(Collections.singletonList(3l));
+    }
+
+    @Test
+    @DisplayName("Não deve contar o lote desfeito no commit")
+    public void commitFailureTest(){
+
+        PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Mockito.doThrow(new org.springframework.transaction.TransactionSystemException("commit"))
+                .when(transactionManager).commit(Mockito.any());
+        archiver = new LoanArchiver(loanRepository, archiveRepository, transactionManager, Duration.ofDays(30), 2, Duration.ZERO);
+        Mockito.when( loanRepository.findReturnedBefore(Mockito.any(), Mockito.any(Pageable.class))).thenReturn(Arrays.asList(1l, 2l));
+        Mockito.when( archiveRepository.archive(Mockito.anyCollection(), Mockito.eq(TODAY))).thenReturn(2);
+        Mockito.when( loanRepository.deleteReturned(Mockito.anyCollection())).thenReturn(2);
+
+        Assertions.assertThat( Assertions.catchThrowable(() -> archiver.archive(TODAY))).isNotNull();
+        Assertions.assertThat( archiver.archived()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve desfazer o lote quando a copia e a remoção não batem")
+    public void mismatchTest(){
+
+        Mockito.when( loanRepository.findReturnedBefore(Mockito.any(), Mockito.any(Pageable.class))).thenReturn(Arrays.asList(1l, 2l));
+        Mockito.when( archiveRepository.archive(Mockito.anyCollection(), Mockito.eq(TODAY))).thenReturn(2);
+        Mockito.when( loanRepository.deleteReturned(Mockito.anyCollection())).thenReturn(1);
+
+        Throwable exception = Assertions.catchThrowable(() -> archiver.archive(TODAY));
+
+        Assertions.assertThat( exception).isInstanceOf(IllegalStateException.class);
+        Assertions.assertThat( archiver.archived()).isZero();
+    }
+}
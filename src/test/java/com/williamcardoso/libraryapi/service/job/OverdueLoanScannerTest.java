@@ -0,0 +1,91 @@
+package com.williamcardoso.libraryapi.service.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.williamcardoso.libraryapi.model.entity.ScanCheckpoint;
+import com.williamcardoso.libraryapi.model.projection.OverdueLoan;
+import com.williamcardoso.libraryapi.model.repository.LoanRepository;
+import com.williamcardoso.libraryapi.model.repository.ScanCheckpointRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+public class OverdueLoanScannerTest {
+
+    static final LocalDate TODAY = LocalDate.of(2020, 1, 10);
+
+    @TempDir
+    Path reportDir;
+
+    LoanRepository loanRepository;
+
+    ScanCheckpointRepository checkpointRepository;
+
+    OverdueLoanScanner scanner;
+
+    @BeforeEach
+    public void setup(){
+        loanRepository = Mockito.mock(LoanRepository.class);
+        checkpointRepository = Mockito.mock(ScanCheckpointRepository.class);
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        scanner = new OverdueLoanScanner(loanRepository, checkpointRepository, Mockito.mock(PlatformTransactionManager.class),
+                objectMapper, 3, 2, reportDir.toString());
+    }
+
+    @Test
+    @DisplayName("Deve gravar os atrasados no relatorio e avançar a marca a cada bloco")
+    public void scanTest() throws Exception{
+
+        LocalDate cutoff = TODAY.minusDays(3);
+        Mockito.when( checkpointRepository.findById(OverdueLoanScanner.CHECKPOINT)).thenReturn(Optional.empty());
+        Mockito.when( loanRepository.findOverdueAfter(Mockito.eq(cutoff), Mockito.eq(OverdueLoanScanner.FIRST_DATE), Mockito.eq(0l), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(overdue(1l, 1), overdue(2l, 2)));
+        Mockito.when( loanRepository.findOverdueAfter(Mockito.eq(cutoff), Mockito.eq(LocalDate.of(2020, 1, 2)), Mockito.eq(2l), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.singletonList(overdue(3l, 5)));
+
+        long found = scanner.scan(TODAY);
+
+        Assertions.assertThat( found).isEqualTo(3);
+        Assertions.assertThat( Files.readAllLines(reportDir.resolve("overdue-2020-01-10.ndjson")))
+                .hasSize(3)
+                .first().asString().contains("\"isbn\":\"1\"", "\"loandate\":\"2020-01-01\"");
+
+        ArgumentCaptor<ScanCheckpoint> checkpoint = ArgumentCaptor.forClass(ScanCheckpoint.class);
+        Mockito.verify( checkpointRepository, Mockito.times(2)).save(checkpoint.capture());
+        Assertions.assertThat( checkpoint.getValue().getLastId()).isEqualTo(3l);
+        Assertions.assertThat( checkpoint.getValue().getLastDate()).isEqualTo(LocalDate.of(2020, 1, 5));
+    }
+
+    @Test
+    @DisplayName("Não deve criar relatorio nem mover a marca sem novos atrasados")
+    public void emptyScanTest(){
+
+        ScanCheckpoint checkpoint = ScanCheckpoint.builder().name(OverdueLoanScanner.CHECKPOINT).lastDate(TODAY.minusDays(4)).lastId(7l).build();
+        Mockito.when( checkpointRepository.findById(OverdueLoanScanner.CHECKPOINT)).thenReturn(Optional.of(checkpoint));
+        Mockito.when( loanRepository.findOverdueAfter(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.emptyList());
+
+        Assertions.assertThat( scanner.scan(TODAY)).isZero();
+        Assertions.assertThat( reportDir.resolve("overdue-2020-01-10.ndjson")).doesNotExist();
+        Mockito.verify( checkpointRepository, Mockito.never()).save(Mockito.any());
+    }
+
+    private OverdueLoan overdue(Long id, int day) {
+        return OverdueLoan.builder().id(id).bookId(id).isbn(String.valueOf(id)).customer("Fulano").loandate(LocalDate.of(2020, 1, day)).build();
+    }
+}
@@ -0,0 +1,75 @@
+package com.williamcardoso.libraryapi.service.lock;
+
+import com.williamcardoso.libraryapi.exception.ServiceBusyException;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BookLocksTest {
+
+    BookLocks locks;
+
+    @BeforeEach
+    public void setUp(){
+        this.locks = new BookLocks(256, Duration.ofMillis(200));
+    }
+
+    @Test
+    @DisplayName("Deve fazer fila para o mesmo livro e registrar a espera do livro")
+    public void sameBookTest() throws Exception{
+
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> locks.withLock(1l, () -> {
+            holding.countDown();
+            await(release);
+            return null;
+        }));
+        holding.await(1, TimeUnit.SECONDS);
+
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> locks.withLock(1l, () -> "segundo"));
+        Thread.sleep(50);
+        Assertions.assertThat( second).isNotDone();
+        release.countDown();
+
+        Assertions.assertThat( second.get(1, TimeUnit.SECONDS)).isEqualTo("segundo");
+        first.get(1, TimeUnit.SECONDS);
+        Assertions.assertThat( locks.hottest(10)).extracting(BookContentionStats::getBookId).containsExactly(1l);
+        Assertions.assertThat( locks.hottest(10).get(0).getWaits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve bloquear livros diferentes")
+    public void otherBookTest() throws Exception{
+
+        String result = locks.withLock(1l, () -> CompletableFuture.supplyAsync(() -> locks.withLock(2l, () -> "outro")).join());
+
+        Assertions.assertThat( result).isEqualTo("outro");
+        Assertions.assertThat( locks.hottest(10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve desistir depois do tempo maximo de espera")
+    public void timeoutTest(){
+
+        Throwable exception = Assertions.catchThrowable(() -> locks.withLock(1l,
+                () -> CompletableFuture.supplyAsync(() -> locks.withLock(1l, () -> "segundo")).join()));
+
+        Assertions.assertThat( exception).hasCauseInstanceOf(ServiceBusyException.class);
+        Assertions.assertThat( locks.hottest(10).get(0).getTimeouts()).isEqualTo(1);
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}